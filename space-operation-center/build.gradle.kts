@@ -54,8 +54,8 @@ dependencies {
     implementation("org.springframework.kafka:spring-kafka")
     implementation("com.google.protobuf:protobuf-java:3.25.1")
 
-    // PostgreSQL драйвер
-    runtimeOnly("org.postgresql:postgresql")
+    // PostgreSQL драйвер (PGConnection нужен для LISTEN/NOTIFY в OutboxNotificationListener)
+    implementation("org.postgresql:postgresql")
 
     // HikariCP
     implementation("com.zaxxer:HikariCP")
@@ -63,6 +63,10 @@ dependencies {
     implementation("org.flywaydb:flyway-core")
     implementation("org.flywaydb:flyway-database-postgresql")
     testImplementation("com.h2database:h2")
+    // SQL миссий проверяется на настоящем PostgreSQL (тест пропускается без Docker)
+    testImplementation("org.springframework.boot:spring-boot-testcontainers")
+    testImplementation("org.testcontainers:junit-jupiter")
+    testImplementation("org.testcontainers:postgresql")
 }
 
 springBoot {
@@ -1,63 +1,287 @@
 package constellation.Client;
 
-import constellation.Repository.SatellitesRepository;
+import constellationsim.telemetry.proto.TelemetryBatch;
 import constellationsim.telemetry.proto.TelemetryRequest;
 import constellationsim.telemetry.proto.TelemetryServiceGrpc;
 import constellationsim.telemetry.proto.TelemetryUpdate;
-import io.grpc.stub.StreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-
+/**
+ * Поток телеметрии из telemetry-service с переподключением.
+ * <p>
+ * Потоки gRPC не блокируются: после ошибки или завершения потока новое подключение планируется
+ * отдельным потоком с экспоненциальной задержкой и случайным разбросом (от
+ * {@code telemetry.client.reconnect.initial-backoff-ms} до {@code max-backoff-ms}), поэтому
+ * реплики не переподключаются одновременно. Задержка сбрасывается, когда новый поток доставил
+ * первое сообщение.
+ * </p>
+ * <p>
+ * По номеру такта пачки отслеживаются пропуски и перезапуск сервера (номер такта уменьшился).
+ * При подключении сервер сразу отдает последний кадр целиком; после переподключения и перезапуска
+ * сервера буфер записи ({@link TelemetryWriteBehind#resync()}) забывает записанные значения и
+ * перечитывает известные спутники, поэтому первый кадр записывается полностью, без порога.
+ * </p>
+ */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class TelemetryGrpcClient {
 
-  private final SatellitesRepository repository;
+  // показания пишутся в БД пачками отдельным потоком
+  private final TelemetryWriteBehind writeBehind;
+  private final MeterRegistry meterRegistry;
 
   @GrpcClient("telemetry-service")
   private TelemetryServiceGrpc.TelemetryServiceStub telemetryStub;
 
+  // true - StreamTelemetryBatches (одно сообщение на такт),
+  // false - StreamTelemetry (одно сообщение на спутник) для старых версий telemetry-service
+  @Value("${telemetry.client.batched:true}")
+  private boolean batched;
+
+  @Value("${telemetry.client.reconnect.initial-backoff-ms:500}")
+  private long initialBackoffMs;
+
+  @Value("${telemetry.client.reconnect.max-backoff-ms:30000}")
+  private long maxBackoffMs;
+
+  private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "telemetry-reconnect");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  // номер текущего подключения: закрытие старого подключения не планирует переподключение
+  private final AtomicLong generation = new AtomicLong();
+  // неудачные подключения подряд - степень задержки
+  private final AtomicInteger failures = new AtomicInteger();
+  private volatile TelemetryStreamObserver<?> current;
+  private volatile boolean running = true;
+
+  // время начала подключения и первого сообщения (0 - поток не доставил сообщений)
+  private volatile long connectStartedNanos;
+  private volatile long firstUpdateNanos;
+  // такт последней пачки текущего потока, 0 - пачек еще не было
+  private volatile long lastTick;
+
+  private Counter reconnectsAfterError;
+  private Counter reconnectsAfterCompleted;
+  private Counter missedTicks;
+  private Counter serverResets;
+  private Timer timeToFirstUpdate;
+
   @PostConstruct
   public void startStreaming() {
+    reconnectsAfterError = reconnectCounter("error");
+    reconnectsAfterCompleted = reconnectCounter("completed");
+    missedTicks = Counter.builder("telemetry.client.missed-ticks")
+        .description("Такты, пропущенные потоком телеметрии")
+        .register(meterRegistry);
+    serverResets = Counter.builder("telemetry.client.server-resets")
+        .description("Перезапуски telemetry-service, замеченные по номеру такта")
+        .register(meterRegistry);
+    timeToFirstUpdate = Timer.builder("telemetry.client.time-to-first-update")
+        .description("Время от начала подключения до первого сообщения потока")
+        .register(meterRegistry);
+    Gauge.builder("telemetry.client.stream.uptime", this, TelemetryGrpcClient::uptimeSeconds)
+        .description("Сколько секунд текущий поток телеметрии доставляет сообщения")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+    supervisor.execute(this::connect);
+  }
 
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    supervisor.shutdownNow();
+    TelemetryStreamObserver<?> stream = current;
+    if (stream != null) {
+      stream.cancel();
+    }
+  }
+
+  // новое подключение (поток supervisor)
+  private void connect() {
+    if (!running) {
+      return;
+    }
+    long id = generation.incrementAndGet();
+    connectStartedNanos = System.nanoTime();
+    firstUpdateNanos = 0;
+    lastTick = 0;
     TelemetryRequest request = TelemetryRequest.newBuilder()
         .setSatelliteId(0)
         .build();
+    if (batched) {
+      TelemetryStreamObserver<TelemetryBatch> observer =
+          new TelemetryStreamObserver<>(id, this::applyBatch);
+      current = observer;
+      telemetryStub.streamTelemetryBatches(request, observer);
+    } else {
+      TelemetryStreamObserver<TelemetryUpdate> observer =
+          new TelemetryStreamObserver<>(id, this::applyUpdate);
+      current = observer;
+      telemetryStub.streamTelemetry(request, observer);
+    }
+  }
 
-    StreamObserver<TelemetryUpdate> responseObserver = new StreamObserver<>() {
-      @Override
-      public void onNext(TelemetryUpdate telemetryUpdate) {
-        try {
-          repository.updateTemperatures(
-              telemetryUpdate.getSatelliteId(),
-              telemetryUpdate.getOutsideTemperature(),
-              telemetryUpdate.getInsideTemperature()
-          );
-        } catch (Exception e) {
-          System.out.println(e);
-        }
-      }
+  // планирует переподключение после закрытия потока id (поток gRPC - без ожидания)
+  private void scheduleReconnect(long id, Throwable error) {
+    if (!running || id != generation.get()) {
+      return;
+    }
+    firstUpdateNanos = 0;
+    (error != null ? reconnectsAfterError : reconnectsAfterCompleted).increment();
+    long delayMs = backoff(failures.getAndIncrement());
+    if (error != null) {
+      log.warn("Поток телеметрии прерван ({}), переподключение через {} мс",
+          error.getMessage(), delayMs);
+    } else {
+      log.warn("Поток телеметрии завершен сервером, переподключение через {} мс", delayMs);
+    }
+    try {
+      supervisor.schedule(this::connect, delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // приложение останавливается
+    }
+  }
 
-      @Override
-      public void onError(Throwable throwable) {
-        try {
-          Thread.sleep(5000);
-        } catch (InterruptedException ignored) {
-        }
-        startStreaming();
-      }
+  // экспоненциальная задержка с разбросом: половина фиксирована, половина случайна
+  private long backoff(int attempt) {
+    long base = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt, 20));
+    return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+  }
 
-      @Override
-      public void onCompleted() {
-        System.out.println("gRPC stream completed unexpectedly, reconnecting...");
-        startStreaming();
-      }
-    };
+  // первое сообщение потока: подключение считается восстановленным
+  private void onFirstUpdate() {
+    long now = System.nanoTime();
+    firstUpdateNanos = now;
+    timeToFirstUpdate.record(now - connectStartedNanos, TimeUnit.NANOSECONDS);
+    if (failures.getAndSet(0) > 0) {
+      log.info("Поток телеметрии восстановлен");
+    }
+    writeBehind.resync();
+  }
 
-    telemetryStub.streamTelemetry(request, responseObserver);
+  private void applyUpdate(TelemetryUpdate telemetryUpdate) {
+    writeBehind.offer(
+        telemetryUpdate.getSatelliteId(),
+        telemetryUpdate.getOutsideTemperature(),
+        telemetryUpdate.getInsideTemperature()
+    );
   }
 
+  // параллельные массивы пачки: i-й элемент относится к спутнику getSatelliteIds(i)
+  private void applyBatch(TelemetryBatch batch) {
+    checkSequence(batch.getTick());
+    for (int i = 0; i < batch.getSatelliteIdsCount(); i++) {
+      writeBehind.offer(
+          batch.getSatelliteIds(i),
+          batch.getOutsideTemperatures(i),
+          batch.getInsideTemperatures(i)
+      );
+    }
+  }
+
+  // такты идут подряд, пачки одного кадра - с одним тактом; пропуск - сервер заменил
+  // неотправленные пачки (медленный клиент), уменьшение - сервер перезапущен и считает такты
+  // заново
+  private void checkSequence(long tick) {
+    long previous = lastTick;
+    lastTick = tick;
+    if (previous == 0) {
+      return;
+    }
+    if (tick < previous) {
+      serverResets.increment();
+      log.info("telemetry-service перезапущен (такт {} после {}), полная запись кадра", tick,
+          previous);
+      writeBehind.resync();
+    } else if (tick > previous + 1) {
+      missedTicks.increment(tick - previous - 1);
+    }
+  }
+
+  private double uptimeSeconds() {
+    long since = firstUpdateNanos;
+    return since == 0 ? 0 : (System.nanoTime() - since) / 1e9;
+  }
+
+  private Counter reconnectCounter(String reason) {
+    return Counter.builder("telemetry.client.reconnects")
+        .description("Переподключения потока телеметрии")
+        .tag("reason", reason)
+        .register(meterRegistry);
+  }
+
+  // наблюдатель одного подключения; сообщения запрашиваются вручную по одному: следующее -
+  // когда буфер записи готов его принять
+  private class TelemetryStreamObserver<T>
+      implements ClientResponseObserver<TelemetryRequest, T> {
+
+    private final long id;
+    private final Consumer<T> handler;
+    private ClientCallStreamObserver<TelemetryRequest> requestStream;
+
+    private TelemetryStreamObserver(long id, Consumer<T> handler) {
+      this.id = id;
+      this.handler = handler;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<TelemetryRequest> requestStream) {
+      this.requestStream = requestStream;
+      requestStream.disableAutoRequestWithInitial(1);
+    }
+
+    @Override
+    public void onNext(T message) {
+      if (firstUpdateNanos == 0) {
+        onFirstUpdate();
+      }
+      try {
+        handler.accept(message);
+      } catch (Exception e) {
+        log.warn("Ошибка обработки сообщения телеметрии", e);
+      }
+      writeBehind.afterAccepted(() -> requestStream.request(1));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      scheduleReconnect(id, throwable);
+    }
+
+    @Override
+    public void onCompleted() {
+      scheduleReconnect(id, null);
+    }
+
+    private void cancel() {
+      if (requestStream != null) {
+        requestStream.cancel("space-operation-center останавливается", null);
+      }
+    }
+  }
 }
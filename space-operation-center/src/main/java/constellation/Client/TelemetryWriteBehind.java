@@ -0,0 +1,284 @@
+package constellation.Client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Отложенная запись телеметрии в таблицу satellite_telemetry.
+ * <p>
+ * Поток gRPC только кладет показания в буфер "спутник -> последнее показание": новое показание
+ * спутника заменяет еще не записанное. Отдельный поток раз в
+ * {@code telemetry.client.flush-interval-ms} забирает буфер и записывает его одним JDBC batch
+ * (UPDATE на спутник, по возрастанию id). Показания, отличающиеся от записанных меньше чем на
+ * {@code telemetry.client.deadband}, не записываются.
+ * </p>
+ * <p>
+ * Показания спутников, которых нет в множестве известных id, отбрасываются до буфера. Множество
+ * загружается из БД при запуске и перезагружается раз в {@code known-ids-refresh-ms}; id, для
+ * которого UPDATE не нашел строку, удаляется из множества сразу.
+ * </p>
+ * <p>
+ * Скорость приема следует за скоростью записи (ручной flow control gRPC, см.
+ * {@link #afterAccepted(Runnable)}): пока идет запись или с последней успешной записи принято
+ * {@code max-unflushed-readings} показаний, следующее сообщение запрашивается у сервера только
+ * после успешной записи. Считаются принятые показания, а не размер буфера: буфер по спутникам не
+ * больше флота, а сообщение пачки несет весь кадр, сообщение потока по спутникам - одно показание.
+ * Пока БД недоступна, прием остановлен.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryWriteBehind {
+
+  private static final String UPDATE_SQL = """
+      UPDATE satellite_telemetry
+      SET outside_temperature = ?, inside_temperature = ?
+      WHERE satellite_id = ?
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final MeterRegistry meterRegistry;
+
+  private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "telemetry-flush");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  // период записи буфера
+  @Value("${telemetry.client.flush-interval-ms:1000}")
+  private long flushIntervalMs;
+
+  // изменения температуры не больше порога не записываются, градусы
+  @Value("${telemetry.client.deadband:0.1}")
+  private double deadband;
+
+  // период перезагрузки известных id
+  @Value("${telemetry.client.known-ids-refresh-ms:30000}")
+  private long knownIdsRefreshMs;
+
+  // сколько показаний принимается с последней успешной записи без ожидания следующей
+  @Value("${telemetry.client.max-unflushed-readings:100000}")
+  private long maxUnflushedReadings;
+
+  // спутники, строки которых есть в satellite_telemetry
+  private final Set<Long> knownIds = ConcurrentHashMap.newKeySet();
+
+  // последние незаписанные показания {снаружи, внутри}; доступ под this
+  private Map<Long, double[]> pending = new HashMap<>();
+  // показания, принятые с последней успешной записи, идет ли запись и отложенный запрос
+  // следующего сообщения; доступ под this
+  private long unflushedReadings;
+  private boolean flushing;
+  private Runnable deferredRequest;
+
+  // последние записанные значения, только поток записи
+  private final Map<Long, double[]> written = new HashMap<>();
+  // перед следующей записью забыть записанные значения и перечитать известные id
+  private volatile boolean resyncRequested;
+
+  private Timer flushDuration;
+  private Counter writtenRows;
+  private Counter skippedDeadband;
+  private Counter skippedUnknown;
+
+  @PostConstruct
+  public void start() {
+    flushDuration = Timer.builder("telemetry.ingest.flush")
+        .description("Время записи буфера телеметрии в БД")
+        .register(meterRegistry);
+    writtenRows = Counter.builder("telemetry.ingest.written")
+        .description("Записанные показания телеметрии")
+        .register(meterRegistry);
+    skippedDeadband = Counter.builder("telemetry.ingest.skipped")
+        .description("Показания телеметрии, не записанные в БД")
+        .tag("reason", "deadband")
+        .register(meterRegistry);
+    skippedUnknown = Counter.builder("telemetry.ingest.skipped")
+        .description("Показания телеметрии, не записанные в БД")
+        .tag("reason", "unknown")
+        .register(meterRegistry);
+    reloadKnownIds();
+    flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs,
+        TimeUnit.MILLISECONDS);
+    flusher.scheduleWithFixedDelay(this::reloadKnownIdsSafely, knownIdsRefreshMs,
+        knownIdsRefreshMs, TimeUnit.MILLISECONDS);
+  }
+
+  // кладет показание в буфер (поток gRPC); неизвестные спутники отбрасываются
+  public void offer(long satelliteId, double outsideTemperature, double insideTemperature) {
+    if (!knownIds.contains(satelliteId)) {
+      skippedUnknown.increment();
+      return;
+    }
+    synchronized (this) {
+      pending.put(satelliteId, new double[]{outsideTemperature, insideTemperature});
+      unflushedReadings++;
+    }
+  }
+
+  // вызывается после обработки сообщения потока: requestNext запрашивает у сервера следующее
+  // сообщение сразу или после ближайшей успешной записи, если запись идет сейчас или с прошлой
+  // записи принято слишком много показаний
+  public void afterAccepted(Runnable requestNext) {
+    synchronized (this) {
+      if (flushing || unflushedReadings >= maxUnflushedReadings) {
+        deferredRequest = requestNext;
+        return;
+      }
+    }
+    requestNext.run();
+  }
+
+  // следующий кадр записывается полностью, без порога (новый поток или перезапуск сервера:
+  // значения в БД могли разойтись с записанными), известные id перечитываются
+  public void resync() {
+    resyncRequested = true;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flusher.shutdown();
+    try {
+      if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+        flusher.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      flusher.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    // последние показания записываются при остановке
+    flushSafely();
+  }
+
+  private void flushSafely() {
+    try {
+      flushDuration.record(this::flush);
+    } catch (Exception e) {
+      // исключение остановило бы scheduleWithFixedDelay
+      log.error("Ошибка записи телеметрии в БД", e);
+    }
+  }
+
+  private void flush() {
+    if (resyncRequested) {
+      resyncRequested = false;
+      written.clear();
+      reloadKnownIds();
+    }
+    Map<Long, double[]> batch;
+    long taken;
+    synchronized (this) {
+      batch = pending;
+      pending = new HashMap<>();
+      taken = unflushedReadings;
+      flushing = true;
+    }
+    try {
+      write(batch);
+    } catch (RuntimeException e) {
+      // показания возвращаются в буфер, если их еще не заменили более новые; отложенный запрос
+      // остается до успешной записи - при недоступной БД прием не продолжается
+      synchronized (this) {
+        batch.forEach(pending::putIfAbsent);
+        flushing = false;
+      }
+      throw e;
+    }
+    releaseDeferredRequest(taken);
+  }
+
+  private void write(Map<Long, double[]> batch) {
+    List<Long> ids = new ArrayList<>(batch.size());
+    for (Map.Entry<Long, double[]> entry : batch.entrySet()) {
+      double[] last = written.get(entry.getKey());
+      double[] reading = entry.getValue();
+      if (last != null && Math.abs(reading[0] - last[0]) <= deadband
+          && Math.abs(reading[1] - last[1]) <= deadband) {
+        skippedDeadband.increment();
+      } else {
+        ids.add(entry.getKey());
+      }
+    }
+    if (ids.isEmpty()) {
+      return;
+    }
+    // один порядок строк во всех пачках - меньше ожидания блокировок с другими транзакциями
+    ids.sort(null);
+
+    int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, ids, ids.size(), (ps, id) -> {
+      double[] reading = batch.get(id);
+      ps.setDouble(1, reading[0]);
+      ps.setDouble(2, reading[1]);
+      ps.setLong(3, id);
+    });
+    int index = 0;
+    int rows = 0;
+    for (int[] chunk : counts) {
+      for (int count : chunk) {
+        Long id = ids.get(index++);
+        if (count == 0) {
+          // строки нет - спутник удален
+          knownIds.remove(id);
+          written.remove(id);
+        } else {
+          written.put(id, batch.get(id));
+          rows++;
+        }
+      }
+    }
+    writtenRows.increment(rows);
+  }
+
+  // запись завершена - прием продолжается, если после нее принято не больше предела
+  private void releaseDeferredRequest(long flushedReadings) {
+    Runnable request = null;
+    synchronized (this) {
+      flushing = false;
+      unflushedReadings -= flushedReadings;
+      if (unflushedReadings < maxUnflushedReadings) {
+        request = deferredRequest;
+        deferredRequest = null;
+      }
+    }
+    if (request != null) {
+      request.run();
+    }
+  }
+
+  private void reloadKnownIdsSafely() {
+    try {
+      reloadKnownIds();
+    } catch (Exception e) {
+      log.warn("Не удалось перезагрузить id спутников", e);
+    }
+  }
+
+  private void reloadKnownIds() {
+    Set<Long> ids = new HashSet<>(jdbcTemplate.queryForList(
+        "SELECT satellite_id FROM satellite_telemetry", Long.class));
+    knownIds.retainAll(ids);
+    knownIds.addAll(ids);
+    written.keySet().retainAll(ids);
+  }
+}
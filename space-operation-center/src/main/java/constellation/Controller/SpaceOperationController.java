@@ -1,5 +1,6 @@
 package constellation.Controller;
 
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
 import constellation.Service.ConstellationService.DTO.ConstellationStatusDTO;
 import constellation.Service.SpaceOperationCenterService.AddSatelliteRequest;
 import constellation.Service.SpaceOperationCenterService.ConstellationRequest;
@@ -7,8 +8,11 @@ import constellation.Service.SpaceOperationCenterService.MissionRequest.MissionR
 import constellation.Service.SpaceOperationCenterService.SpaceOperationCenterService;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -29,6 +33,42 @@ public class SpaceOperationController {
     return ResponseEntity.ok().build();
   }
 
+  // миссия группировки одним UPDATE на тип спутника; ответ - итоги по группировке
+  @PostMapping("/missions/constellations/{constellationName}/set-based")
+  public ResponseEntity<ConstellationMissionResultDTO> executeConstellationMissionSetBased(
+      @PathVariable String constellationName) {
+    List<ConstellationMissionResultDTO> results =
+        spaceOperationCenterService.executeMissionsInDatabase(constellationName);
+    return results == null
+        ? ResponseEntity.notFound().build()
+        : ResponseEntity.ok(results.get(0));
+  }
+
+  // миссия всех группировок; ответ - итоги по каждой группировке со спутниками
+  @PostMapping("/missions/constellations/set-based")
+  public ResponseEntity<List<ConstellationMissionResultDTO>> executeMissionsSetBased() {
+    return ResponseEntity.ok(spaceOperationCenterService.executeMissionsInDatabase(null));
+  }
+
+  // миссия группировки в движке миссий: по очереди с другими миссиями этой группировки,
+  // с повтором при конфликте версий спутников
+  @PostMapping("/missions/constellations/{constellationName}")
+  public ResponseEntity<ConstellationMissionResultDTO> executeConstellationMission(
+      @PathVariable String constellationName) {
+    ConstellationMissionResultDTO result =
+        spaceOperationCenterService.executeConstellationMissionInParallel(constellationName);
+    return result == null
+        ? ResponseEntity.notFound().build()
+        : ResponseEntity.ok(result);
+  }
+
+  // миссии всех группировок параллельно
+  @PostMapping("/missions/constellations")
+  public ResponseEntity<List<ConstellationMissionResultDTO>> executeAllConstellationMissions() {
+    return ResponseEntity.ok(
+        spaceOperationCenterService.executeAllConstellationMissionsInParallel());
+  }
+
   @PostMapping("/add-satellites")
   public ResponseEntity<Void> addSatellites(@RequestBody AddSatelliteRequest request) {
     spaceOperationCenterService.addSatellite(request);
@@ -67,4 +107,11 @@ public class SpaceOperationController {
     return ResponseEntity.ok().build();
   }
 
+  // спутник изменила параллельная транзакция (миссия, активация, удаление); миссии группировок
+  // движок повторяет сам, сюда доходит конфликт остальных операций или исчерпанные попытки
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<String> handleConflict(OptimisticLockingFailureException e) {
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+        .body("Спутники изменены параллельной операцией, повторите запрос");
+  }
 }
@@ -1,5 +1,6 @@
 package constellation.Kafka;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.kafka.clients.producer.ProducerConfig;
@@ -10,6 +11,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
 
 @Configuration
@@ -19,9 +21,21 @@ public class KafkaProducerConfig {
   @Value("${spring.kafka.bootstrap-servers:kafka:9092}")
   private String bootstrapServers;
 
+  // профиль батчинга и сжатия (low_latency, balanced, throughput)
+  @Value("${outbox.kafka.profile:balanced}")
+  private String profile;
+
+  // exactly-once режим: транзакционный producer, пачка outbox уходит одной kafka транзакцией
+  @Value("${outbox.kafka.transactional:false}")
+  private boolean transactional;
+
+  // префикс transactional.id, должен быть уникальным для каждой реплики
+  @Value("${outbox.kafka.transaction-id-prefix:outbox-}")
+  private String transactionIdPrefix;
+
   // ProducerFactory - интерфейс-фабрика для создания producer'ов
   @Bean
-  public ProducerFactory<String, byte[]> producerFactory() {
+  public ProducerFactory<String, byte[]> producerFactory(MeterRegistry meterRegistry) {
     Map<String, Object> config = new HashMap<>();
 
     // где находится kafka сервер
@@ -39,13 +53,30 @@ public class KafkaProducerConfig {
     // ждет 1 секунду между попытками
     config.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
 
+    // OutboxRelay держит много отправок в полете одновременно
+    // идемпотентный producer не меняет порядок сообщений одного ключа при повторах
+    // и не пишет дубликаты при повторной отправке после сетевой ошибки
+    config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    config.put(ProducerConfig.ACKS_CONFIG, "all");
+    config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+
+    // linger.ms, batch.size и сжатие из профиля
+    ProducerProfile.valueOf(profile.toUpperCase().replace('-', '_')).applyTo(config);
+
     // реализация фабрики от spring
-    return new DefaultKafkaProducerFactory<>(config);
+    DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(config);
+    if (transactional) {
+      factory.setTransactionIdPrefix(transactionIdPrefix);
+    }
+    // метрики producer (kafka.producer.record.send.rate, request.latency.avg и т.д.) в micrometer
+    factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+    return factory;
   }
 
   @Bean
-  public KafkaTemplate<String, byte[]> kafkaTemplate() {
+  public KafkaTemplate<String, byte[]> kafkaTemplate(
+      ProducerFactory<String, byte[]> producerFactory) {
     // KafkaTemplate - spring обертка над низким уровнем kafka api
-    return new KafkaTemplate<>(producerFactory());
+    return new KafkaTemplate<>(producerFactory);
   }
 }
@@ -29,15 +29,24 @@ public class OutboxEvent {
   @Column(name = "event_type", nullable = false)
   private String eventType;
 
-  @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+  // json payload строк, записанных до появления payload_bytes
+  @Column(name = "payload", columnDefinition = "TEXT")
   private String payload;
 
+  // сериализованное protobuf сообщение SatelliteEvent, отправляется в kafka как есть
+  @Column(name = "payload_bytes")
+  private byte[] payloadBytes;
+
   @Column(name = "created_at", nullable = false)
   private Instant createdAt;
 
   @Column(name = "status", nullable = false)
   private String status;
 
+  // неудачные попытки отправки; после outbox.relay.max-attempts статус становится FAILED
+  @Column(name = "attempts", nullable = false)
+  private int attempts;
+
   // при создании каждой строки в поле status будет PENDING (еще не обработано)
   @PrePersist
   protected void onCreate() {
@@ -47,9 +56,9 @@ public class OutboxEvent {
     }
   }
 
-  public OutboxEvent(String aggregateId, String eventType, String payload) {
+  public OutboxEvent(String aggregateId, String eventType, byte[] payloadBytes) {
     this.aggregateId = aggregateId;
     this.eventType = eventType;
-    this.payload = payload;
+    this.payloadBytes = payloadBytes;
   }
 }
@@ -1,13 +1,51 @@
 package constellation.Kafka;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Репозиторий для таблицы outbox_event: - id; - event_type (add, delete); - payload; - текст
- * (json); - created_at; - status (pending, sent)
+ * (json); - created_at; - status (pending, sent, failed); - attempts
  */
 public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
 
-  List<OutboxEvent> findByStatus(String status);
+  // забирает пачку PENDING строк из указанных партиций в порядке id и блокирует их до конца
+  // транзакции; строки, уже заблокированные другой транзакцией, пропускаются (SKIP LOCKED)
+  // партиция события - mod(abs(hashtext(aggregate_id)), partitionCount)
+  @Query(value = """
+      SELECT * FROM outbox_events
+      WHERE status = 'PENDING'
+        AND mod(abs(CAST(hashtext(aggregate_id) AS BIGINT)), :partitionCount) IN (:partitions)
+      ORDER BY id
+      LIMIT :limit
+      FOR UPDATE SKIP LOCKED
+      """, nativeQuery = true)
+  List<OutboxEvent> claimPending(@Param("partitionCount") int partitionCount,
+      @Param("partitions") Collection<Integer> partitions, @Param("limit") int limit);
+
+  // уведомляет реплики о новых событиях; Postgres доставляет NOTIFY только после коммита
+  @Modifying
+  @Query(value = "NOTIFY " + OutboxNotificationListener.CHANNEL, nativeQuery = true)
+  void notifyRelays();
+
+  // одним UPDATE отмечает всю отправленную пачку как SENT
+  @Modifying
+  @Query("UPDATE OutboxEvent e SET e.status = 'SENT' WHERE e.id IN :ids")
+  int markSent(@Param("ids") Collection<Long> ids);
+
+  // засчитывает неудачную попытку отправки; событие, исчерпавшее maxAttempts попыток,
+  // получает статус FAILED и больше не забирается пересылкой
+  @Modifying
+  @Query(value = """
+      UPDATE outbox_events
+      SET attempts = attempts + 1,
+          status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE status END
+      WHERE id IN (:ids)
+      """, nativeQuery = true)
+  int recordFailedAttempt(@Param("ids") Collection<Long> ids,
+      @Param("maxAttempts") int maxAttempts);
 }
@@ -0,0 +1,86 @@
+package constellation.Kafka;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Слушает канал Postgres {@value #CHANNEL} и будит {@link OutboxScheduler}, когда любая реплика
+ * фиксирует транзакцию с outbox событиями ({@link SatelliteEventPublisher} делает NOTIFY перед
+ * коммитом, Postgres доставляет уведомление только после коммита). Так событие сразу подхватывает
+ * узел, который владеет его партицией, даже если HTTP запрос пришел на другую реплику.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxNotificationListener {
+
+  public static final String CHANNEL = "outbox_events";
+
+  private final DataSource dataSource;
+  private final OutboxScheduler outboxScheduler;
+
+  private final ExecutorService listenerThread = Executors.newSingleThreadExecutor(
+      r -> new Thread(r, "outbox-listen"));
+
+  @Value("${outbox.relay.notify.enabled:true}")
+  private boolean enabled;
+
+  private volatile boolean running = true;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (enabled) {
+      listenerThread.submit(this::listen);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    listenerThread.shutdownNow();
+  }
+
+  private void listen() {
+    while (running) {
+      try (Connection connection = dataSource.getConnection()) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        log.info("Outbox: подписка на канал {}", CHANNEL);
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(1000);
+          if (notifications != null && notifications.length > 0) {
+            outboxScheduler.wakeUp();
+          }
+        }
+      } catch (SQLException e) {
+        if (!running) {
+          return;
+        }
+        // до переподключения события подхватит опрос по таймеру
+        log.warn("Outbox: потеряно соединение LISTEN, переподключение через 5 с", e);
+        try {
+          TimeUnit.SECONDS.sleep(5);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package constellation.Kafka;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Распределение партиций outbox между репликами space-operation-center.
+ * <p>
+ * Каждая реплика регистрируется в outbox_relay_nodes и периодически присылает heartbeat. По
+ * количеству живых узлов считается справедливая доля партиций: лишние партиции узел отдает, а
+ * недостающие забирает из свободных или из партиций с истекшей арендой (например, у упавшего
+ * узла). События одной партиции пересылает только ее текущий владелец, поэтому реплики не
+ * отправляют одни и те же строки, а порядок событий спутника сохраняется.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxPartitionLeaseManager {
+
+  private final OutboxRelayNodeRepository nodeRepository;
+  private final OutboxRelayPartitionRepository partitionRepository;
+
+  // идентификатор узла - из конфига или имя хоста + случайный суффикс
+  @Value("${outbox.relay.node-id:}")
+  private String configuredNodeId;
+
+  // длительность аренды партиции; узел без heartbeat дольше этого времени считается упавшим
+  @Value("${outbox.relay.lease-ms:30000}")
+  private long leaseMs;
+
+  @Getter
+  private String nodeId;
+
+  // количество партиций - количество строк в outbox_relay_partitions
+  @Getter
+  private int partitionCount;
+
+  @PostConstruct
+  public void init() {
+    nodeId = configuredNodeId.isBlank()
+        ? System.getenv().getOrDefault("HOSTNAME", "node") + "-"
+        + UUID.randomUUID().toString().substring(0, 8)
+        : configuredNodeId;
+    partitionCount = (int) partitionRepository.count();
+    log.info("Outbox relay: узел {}, партиций {}", nodeId, partitionCount);
+  }
+
+  // heartbeat узла и перераспределение партиций
+  @Scheduled(fixedDelayString = "${outbox.relay.heartbeat-ms:10000}")
+  @Transactional
+  public void heartbeat() {
+    nodeRepository.heartbeat(nodeId);
+    nodeRepository.deleteStale(leaseMs);
+    long aliveNodes = Math.max(1, nodeRepository.countAlive(leaseMs));
+    int fairShare = (int) ((partitionCount + aliveNodes - 1) / aliveNodes);
+
+    partitionRepository.renew(nodeId, leaseMs);
+    List<Integer> owned = partitionRepository.findOwned(nodeId);
+    if (owned.size() > fairShare) {
+      List<Integer> extra = owned.subList(fairShare, owned.size());
+      partitionRepository.release(nodeId, extra);
+      log.info("Outbox relay: узел {} отдал партиции {}", nodeId, extra);
+    } else if (owned.size() < fairShare) {
+      int acquired = partitionRepository.acquire(nodeId, leaseMs, fairShare - owned.size());
+      if (acquired > 0) {
+        log.info("Outbox relay: узел {} забрал {} партиций", nodeId, acquired);
+      }
+    }
+  }
+
+  /**
+   * Возвращает партиции, которыми узел владеет, и блокирует их (FOR SHARE) до конца текущей
+   * транзакции. Вызывается внутри транзакции пересылки пачки.
+   *
+   * @return номера партиций узла, пустой список если узел ничем не владеет
+   */
+  public List<Integer> lockOwnedPartitions() {
+    return partitionRepository.lockOwned(nodeId);
+  }
+
+  // при остановке узел сразу отдает свои партиции, не дожидаясь истечения аренды
+  @PreDestroy
+  public void shutdown() {
+    try {
+      partitionRepository.releaseAll(nodeId);
+      nodeRepository.deleteById(nodeId);
+    } catch (Exception e) {
+      log.warn("Outbox relay: не удалось освободить партиции узла {}", nodeId, e);
+    }
+  }
+}
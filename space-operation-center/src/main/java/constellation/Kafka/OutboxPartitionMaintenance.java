@@ -0,0 +1,133 @@
+package constellation.Kafka;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Обслуживание секций outbox_events.
+ * <p>
+ * Таблица секционирована по created_at (секция на сутки UTC, имя {@code outbox_events_pYYYYMMDD}).
+ * Задача заранее создает секции на {@code outbox.retention.partitions-ahead} суток вперед и
+ * удаляет целиком секции старше {@code outbox.retention.days} суток вместо построчного DELETE.
+ * Секция, в которой остались PENDING события, не удаляется.
+ * </p>
+ * <p>
+ * Устаревшая секция сначала отсоединяется через {@code DETACH PARTITION ... CONCURRENTLY}, который
+ * не блокирует запись и чтение outbox_events, и только потом удаляется: {@code DROP TABLE}
+ * присоединенной секции берет ACCESS EXCLUSIVE на всю таблицу и останавливает пересылку.
+ * CONCURRENTLY не выполняется в транзакции, поэтому задача работает без транзакции на одном
+ * соединении, а реплики разделяет advisory lock уровня сессии. CONCURRENTLY недоступен при
+ * секции по умолчанию, поэтому ее у outbox_events нет (V9): события пишутся с текущим временем и
+ * попадают в секции, созданные заранее.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxPartitionMaintenance {
+
+  private static final String PARTITION_PREFIX = "outbox_events_p";
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  // сколько суток хранятся секции с отправленными событиями
+  @Value("${outbox.retention.days:3}")
+  private int retentionDays;
+
+  // на сколько суток вперед создаются секции
+  @Value("${outbox.retention.partitions-ahead:3}")
+  private int partitionsAhead;
+
+  // обслуживание выполняет только одна реплика - та, что получила advisory lock
+  @Scheduled(fixedDelayString = "${outbox.retention.interval-ms:3600000}")
+  public void maintainPartitions() {
+    // блокировка уровня сессии живет на соединении, поэтому все запросы идут через него
+    jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+      JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+      Boolean locked = session.queryForObject(
+          "SELECT pg_try_advisory_lock(hashtext('outbox_events_maintenance'))", Boolean.class);
+      if (!Boolean.TRUE.equals(locked)) {
+        return null;
+      }
+      try {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        createPartitions(session, today);
+        dropExpiredPartitions(session, today.minusDays(retentionDays));
+      } finally {
+        session.queryForObject(
+            "SELECT pg_advisory_unlock(hashtext('outbox_events_maintenance'))", Boolean.class);
+      }
+      return null;
+    });
+  }
+
+  private void createPartitions(JdbcTemplate session, LocalDate today) {
+    for (int i = 0; i <= partitionsAhead; i++) {
+      LocalDate day = today.plusDays(i);
+      session.execute(String.format(
+          "CREATE TABLE IF NOT EXISTS %s PARTITION OF outbox_events "
+              + "FOR VALUES FROM ('%s 00:00:00+00') TO ('%s 00:00:00+00')",
+          partitionName(day), day, day.plusDays(1)));
+    }
+  }
+
+  private void dropExpiredPartitions(JdbcTemplate session, LocalDate cutoff) {
+    // attached = null - таблица уже отсоединена, но не удалена (прерванное обслуживание)
+    List<Map<String, Object>> partitions = session.queryForList("""
+        SELECT c.relname, i.inhdetachpending AS detach_pending, i.inhrelid IS NOT NULL AS attached
+        FROM pg_class c
+        LEFT JOIN pg_inherits i
+          ON i.inhrelid = c.oid AND i.inhparent = 'outbox_events'::regclass
+        WHERE c.relkind = 'r' AND starts_with(c.relname, 'outbox_events_p')
+          AND pg_table_is_visible(c.oid)
+        """);
+    for (Map<String, Object> row : partitions) {
+      String partition = (String) row.get("relname");
+      LocalDate day;
+      try {
+        day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+      } catch (DateTimeParseException e) {
+        continue;
+      }
+      if (!day.isBefore(cutoff)) {
+        continue;
+      }
+      if (Boolean.TRUE.equals(row.get("attached"))) {
+        if (Boolean.TRUE.equals(row.get("detach_pending"))) {
+          // CONCURRENTLY был прерван на второй фазе - отсоединение нужно завершить
+          session.execute("ALTER TABLE outbox_events DETACH PARTITION " + partition + " FINALIZE");
+        } else {
+          Boolean hasPending = session.queryForObject(String.format(
+              "SELECT EXISTS (SELECT 1 FROM %s WHERE status = 'PENDING')", partition),
+              Boolean.class);
+          if (Boolean.TRUE.equals(hasPending)) {
+            log.warn("Outbox: секция {} устарела, но содержит PENDING события", partition);
+            continue;
+          }
+          session.execute(
+              "ALTER TABLE outbox_events DETACH PARTITION " + partition + " CONCURRENTLY");
+        }
+      }
+      // отсоединенная таблица никому не видна, DROP не задевает outbox_events
+      session.execute("DROP TABLE " + partition);
+      log.info("Outbox: удалена секция {}", partition);
+    }
+  }
+
+  private String partitionName(LocalDate day) {
+    return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+  }
+}
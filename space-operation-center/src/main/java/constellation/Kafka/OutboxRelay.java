@@ -0,0 +1,379 @@
+package constellation.Kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import constellation.events.proto.SatelliteEvent;
+import constellation.events.proto.SatelliteEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.TransactionAbortedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Пакетная пересылка outbox событий в Kafka.
+ * <p>
+ * За одну транзакцию забирает ограниченную пачку PENDING строк из партиций, которыми владеет узел
+ * (см. {@link OutboxPartitionLeaseManager}), через {@code FOR UPDATE SKIP LOCKED}, отправляет их
+ * в Kafka без ожидания каждой отправки (число неподтвержденных отправок ограничено окном
+ * {@code outbox.relay.max-in-flight}) и одним UPDATE отмечает отправленные строки как SENT.
+ * </p>
+ * <p>
+ * Порядок событий одного спутника сохраняется: строки отправляются в порядке id, ключ сообщения -
+ * aggregate_id (одна партиция Kafka), а producer идемпотентный. Если отправка события спутника не
+ * удалась или не подтверждена, ни оно, ни следующие события этого спутника в пачке не отмечаются
+ * SENT: следующая пачка отправит их заново в исходном порядке (повтор уже доставленных событий
+ * отсекает inbox потребителя по event_id).
+ * </p>
+ * <p>
+ * Событие, которое нельзя отправить никогда, не должно блокировать свой спутник: событие с
+ * неразбираемым payload сразу получает статус FAILED, событие, отклоненное Kafka без возможности
+ * повтора (например, слишком большое), - после {@code outbox.relay.max-attempts} попыток. Временные
+ * ошибки Kafka (недоступность, таймаут) попыткой не считаются: событие ждет в PENDING.
+ * </p>
+ * <p>
+ * Если producer транзакционный ({@code outbox.kafka.transactional}), пачка отправляется одной
+ * kafka транзакцией, которая фиксируется до коммита транзакции БД. Отказ одного события отменяет
+ * транзакцию, но попытка засчитывается только этому событию.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+  private final OutboxEventRepository outboxRepository;
+  // партиции outbox, которыми владеет этот узел
+  private final OutboxPartitionLeaseManager partitionLeases;
+  // KafkaTemplate из KafkaProducerConfig
+  private final KafkaTemplate<String, byte[]> kafkaTemplate;
+  private final ObjectMapper objectMapper;
+  private final MeterRegistry meterRegistry;
+
+  // имя топика - из конфига или satellite-events по умолчанию
+  @Value("${KAFKA_TOPIC_SATELLITE_EVENTS:satellite-events}")
+  private String topic;
+
+  // сколько строк забирается из outbox_events за одну транзакцию
+  @Getter
+  @Value("${outbox.relay.batch-size:500}")
+  private int batchSize;
+
+  // сколько отправок в kafka может одновременно ждать подтверждения
+  @Value("${outbox.relay.max-in-flight:100}")
+  private int maxInFlight;
+
+  // сколько ждать подтверждения всей пачки от kafka
+  @Value("${outbox.relay.send-timeout-ms:10000}")
+  private long sendTimeoutMs;
+
+  // после скольких отказов kafka без возможности повтора событие получает статус FAILED
+  @Value("${outbox.relay.max-attempts:5}")
+  private int maxAttempts;
+
+  // время от записи события в outbox_events до подтверждения отправки от kafka
+  private Timer commitToSendLatency;
+  private Counter failedEvents;
+
+  @PostConstruct
+  public void initMetrics() {
+    commitToSendLatency = Timer.builder("outbox.relay.commit-to-send")
+        .description("Время от записи outbox события до подтверждения отправки в Kafka")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    failedEvents = Counter.builder("outbox.relay.failed")
+        .description("Отказы отправки outbox событий, засчитанные как попытка")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Забирает пачку PENDING событий, отправляет их в Kafka и отмечает отправленные как SENT.
+   *
+   * @return количество отправленных событий (если равно {@link #getBatchSize()}, в таблице
+   * могут оставаться еще PENDING строки; меньше - пачка неполная или часть событий не отправлена)
+   */
+  @Transactional
+  public int relayBatch() {
+    List<Integer> partitions = partitionLeases.lockOwnedPartitions();
+    if (partitions.isEmpty()) {
+      return 0;
+    }
+    List<OutboxEvent> batch = outboxRepository.claimPending(
+        partitionLeases.getPartitionCount(), partitions, batchSize);
+    if (batch.isEmpty()) {
+      return 0;
+    }
+
+    BatchOutcome outcome = kafkaTemplate.isTransactional()
+        ? sendInTransaction(batch)
+        : sendWindowed(batch);
+    if (!outcome.sentIds.isEmpty()) {
+      outboxRepository.markSent(outcome.sentIds);
+    }
+    if (!outcome.poisonedIds.isEmpty()) {
+      // payload не разбирается - повтор не поможет
+      outboxRepository.recordFailedAttempt(outcome.poisonedIds, 1);
+      failedEvents.increment(outcome.poisonedIds.size());
+    }
+    if (!outcome.rejectedIds.isEmpty()) {
+      outboxRepository.recordFailedAttempt(outcome.rejectedIds, maxAttempts);
+      failedEvents.increment(outcome.rejectedIds.size());
+    }
+    log.info("Outbox: отправлено {} из {} событий", outcome.sentIds.size(), batch.size());
+    return outcome.sentIds.size();
+  }
+
+  // отправка без kafka транзакции: много отправок в полете, ожидание подтверждения всей пачки
+  private BatchOutcome sendWindowed(List<OutboxEvent> batch) {
+    // окно неподтвержденных отправок
+    Semaphore window = new Semaphore(maxInFlight);
+    // спутники, у которых отправка не удалась - их события дальше по пачке не отправляются
+    Set<String> failedAggregates = ConcurrentHashMap.newKeySet();
+    BatchOutcome outcome = new BatchOutcome();
+    List<OutboxEvent> sentEvents = new ArrayList<>(batch.size());
+    List<CompletableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(batch.size());
+
+    try {
+      for (OutboxEvent outboxEvent : batch) {
+        String aggregateId = outboxEvent.getAggregateId();
+        if (failedAggregates.contains(aggregateId)) {
+          continue;
+        }
+        byte[] payload;
+        try {
+          payload = payloadOf(outboxEvent);
+        } catch (Exception e) {
+          log.error("Ошибка обработки outbox события {}", outboxEvent.getId(), e);
+          failedAggregates.add(aggregateId);
+          outcome.poisonedIds.add(outboxEvent.getId());
+          continue;
+        }
+        window.acquire();
+        CompletableFuture<SendResult<String, byte[]>> future =
+            kafkaTemplate.send(topic, aggregateId, payload);
+        future.whenComplete((result, ex) -> {
+          window.release();
+          if (ex != null) {
+            failedAggregates.add(aggregateId);
+            log.error("Ошибка отправки outbox события {}", outboxEvent.getId(), ex);
+          } else if (outboxEvent.getCreatedAt() != null) {
+            commitToSendLatency.record(
+                Duration.between(outboxEvent.getCreatedAt(), Instant.now()));
+          }
+        });
+        sentEvents.add(outboxEvent);
+        futures.add(future);
+      }
+      CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+          .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (TimeoutException e) {
+      log.warn("Kafka не подтвердила пачку outbox событий за {} мс", sendTimeoutMs);
+    } catch (Exception e) {
+      // ошибки отдельных отправок уже залогированы в whenComplete
+    }
+
+    // SENT отмечаются только подтвержденные kafka события, и только пока у спутника не было
+    // отказа или неподтвержденной отправки: более поздние события спутника уйдут заново после
+    // него, иначе порядок событий спутника нарушится
+    Set<String> blockedAggregates = new HashSet<>();
+    for (int i = 0; i < sentEvents.size(); i++) {
+      OutboxEvent outboxEvent = sentEvents.get(i);
+      if (blockedAggregates.contains(outboxEvent.getAggregateId())) {
+        continue;
+      }
+      CompletableFuture<SendResult<String, byte[]>> future = futures.get(i);
+      if (future.isDone() && !future.isCompletedExceptionally()) {
+        outcome.sentIds.add(outboxEvent.getId());
+        continue;
+      }
+      blockedAggregates.add(outboxEvent.getAggregateId());
+      if (future.isCompletedExceptionally() && !isRetriable(future.exceptionNow())) {
+        outcome.rejectedIds.add(outboxEvent.getId());
+      }
+    }
+    return outcome;
+  }
+
+  // exactly-once режим: вся пачка уходит одной kafka транзакцией - либо все события пачки видны
+  // read_committed потребителям, либо ни одного; при отмене транзакции строки остаются PENDING.
+  // Если kafka отклонила событие без возможности повтора, попытка засчитывается только ему, а
+  // транзакция повторяется без событий его спутника. Если отклоненное событие не определить по
+  // результатам отправок, события отправляются каждое своей транзакцией
+  private BatchOutcome sendInTransaction(List<OutboxEvent> batch) {
+    BatchOutcome outcome = new BatchOutcome();
+    Set<String> failedAggregates = new HashSet<>();
+    // каждая повторная транзакция исключает еще один спутник, поэтому цикл конечен
+    while (true) {
+      List<OutboxEvent> sentEvents = new ArrayList<>(batch.size());
+      List<CompletableFuture<SendResult<String, byte[]>>> futures =
+          new ArrayList<>(batch.size());
+      try {
+        kafkaTemplate.executeInTransaction(operations -> {
+          for (OutboxEvent outboxEvent : batch) {
+            String aggregateId = outboxEvent.getAggregateId();
+            if (failedAggregates.contains(aggregateId)) {
+              continue;
+            }
+            byte[] payload;
+            try {
+              payload = payloadOf(outboxEvent);
+            } catch (JsonProcessingException e) {
+              log.error("Ошибка обработки outbox события {}", outboxEvent.getId(), e);
+              failedAggregates.add(aggregateId);
+              outcome.poisonedIds.add(outboxEvent.getId());
+              continue;
+            }
+            futures.add(operations.send(topic, aggregateId, payload));
+            sentEvents.add(outboxEvent);
+          }
+          return null;
+        });
+      } catch (Exception e) {
+        log.error("Kafka транзакция с пачкой outbox событий отменена", e);
+        if (isRetriable(e)) {
+          return outcome;
+        }
+        OutboxEvent rejected = rejectedEvent(sentEvents, futures);
+        if (rejected == null) {
+          return sendEachInTransaction(batch, failedAggregates, outcome);
+        }
+        log.error("Kafka отклонила outbox событие {}", rejected.getId());
+        outcome.rejectedIds.add(rejected.getId());
+        failedAggregates.add(rejected.getAggregateId());
+        continue;
+      }
+      Instant now = Instant.now();
+      for (OutboxEvent outboxEvent : sentEvents) {
+        outcome.sentIds.add(outboxEvent.getId());
+        recordLatency(outboxEvent, now);
+      }
+      return outcome;
+    }
+  }
+
+  // событие отмененной транзакции, которое kafka отклонила само по себе: остальные отправки
+  // завершаются TransactionAbortedException из-за отмены
+  private static OutboxEvent rejectedEvent(List<OutboxEvent> sentEvents,
+      List<CompletableFuture<SendResult<String, byte[]>>> futures) {
+    for (int i = 0; i < futures.size(); i++) {
+      CompletableFuture<SendResult<String, byte[]>> future = futures.get(i);
+      if (!future.isCompletedExceptionally()) {
+        continue;
+      }
+      Throwable error = future.exceptionNow();
+      if (!causedBy(error, TransactionAbortedException.class) && !isRetriable(error)) {
+        return sentEvents.get(i);
+      }
+    }
+    return null;
+  }
+
+  // запасной путь после отмены транзакции: событие на транзакцию, отказ засчитывается только
+  // отклоненному событию, следующие события его спутника в пачке не отправляются
+  private BatchOutcome sendEachInTransaction(List<OutboxEvent> batch,
+      Set<String> failedAggregates, BatchOutcome outcome) {
+    for (OutboxEvent outboxEvent : batch) {
+      String aggregateId = outboxEvent.getAggregateId();
+      if (failedAggregates.contains(aggregateId)) {
+        continue;
+      }
+      byte[] payload;
+      try {
+        payload = payloadOf(outboxEvent);
+      } catch (JsonProcessingException e) {
+        log.error("Ошибка обработки outbox события {}", outboxEvent.getId(), e);
+        failedAggregates.add(aggregateId);
+        outcome.poisonedIds.add(outboxEvent.getId());
+        continue;
+      }
+      try {
+        kafkaTemplate.executeInTransaction(
+            operations -> operations.send(topic, aggregateId, payload));
+        outcome.sentIds.add(outboxEvent.getId());
+        recordLatency(outboxEvent, Instant.now());
+      } catch (Exception e) {
+        log.error("Ошибка отправки outbox события {}", outboxEvent.getId(), e);
+        failedAggregates.add(aggregateId);
+        if (!isRetriable(e)) {
+          outcome.rejectedIds.add(outboxEvent.getId());
+        }
+      }
+    }
+    return outcome;
+  }
+
+  private void recordLatency(OutboxEvent outboxEvent, Instant sentAt) {
+    if (outboxEvent.getCreatedAt() != null) {
+      commitToSendLatency.record(Duration.between(outboxEvent.getCreatedAt(), sentAt));
+    }
+  }
+
+  // временная ошибка kafka (недоступность брокера, таймаут): повтор может пройти
+  private static boolean isRetriable(Throwable error) {
+    return causedBy(error, RetriableException.class) || causedBy(error, TimeoutException.class);
+  }
+
+  private static boolean causedBy(Throwable error, Class<? extends Throwable> type) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (type.isInstance(cause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // итог пачки: подтвержденные kafka события, события с неразбираемым payload и события,
+  // отклоненные kafka без возможности повтора
+  private static final class BatchOutcome {
+
+    private final List<Long> sentIds = new ArrayList<>();
+    private final List<Long> poisonedIds = new ArrayList<>();
+    private final List<Long> rejectedIds = new ArrayList<>();
+  }
+
+  // новые строки хранят готовые protobuf байты, которые отправляются без разбора
+  // для старых строк SatelliteEvent собирается из json payload
+  private byte[] payloadOf(OutboxEvent outboxEvent) throws JsonProcessingException {
+    if (outboxEvent.getPayloadBytes() != null) {
+      return outboxEvent.getPayloadBytes();
+    }
+    return buildLegacyEvent(outboxEvent).toByteArray();
+  }
+
+  // структура protobuf (event_id, SatelliteEventType (enum), satellite_id) из json payload
+  private SatelliteEvent buildLegacyEvent(OutboxEvent outboxEvent)
+      throws JsonProcessingException {
+    SatelliteEventPayload json = objectMapper.readValue(
+        outboxEvent.getPayload(), SatelliteEventPayload.class);
+    SatelliteEvent.Builder event = SatelliteEvent.newBuilder()
+        .setEventId(json.getEventId())
+        .setType(SatelliteEventType.valueOf(json.getType()))
+        .setSatelliteId(json.getSatelliteId());
+    if (outboxEvent.getCreatedAt() != null) {
+      event.setOccurredAt(outboxEvent.getCreatedAt().toEpochMilli());
+    }
+    return event.build();
+  }
+}
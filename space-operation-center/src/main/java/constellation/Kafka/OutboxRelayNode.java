@@ -0,0 +1,26 @@
+package constellation.Kafka;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// узел, участвующий в пересылке outbox; живым считается узел со свежим heartbeat_at
+@Entity
+@Table(name = "outbox_relay_nodes")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxRelayNode {
+
+  @Id
+  @Column(name = "node_id", nullable = false)
+  private String nodeId;
+
+  @Column(name = "heartbeat_at", nullable = false)
+  private Instant heartbeatAt;
+}
@@ -0,0 +1,38 @@
+package constellation.Kafka;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Репозиторий для таблицы outbox_relay_nodes: - node_id; - heartbeat_at
+ */
+public interface OutboxRelayNodeRepository extends JpaRepository<OutboxRelayNode, String> {
+
+  // регистрирует узел или обновляет время его последнего heartbeat
+  @Modifying
+  @Transactional
+  @Query(value = """
+      INSERT INTO outbox_relay_nodes (node_id, heartbeat_at) VALUES (:node, now())
+      ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()
+      """, nativeQuery = true)
+  int heartbeat(@Param("node") String nodeId);
+
+  // количество узлов, приславших heartbeat за последние ttlMs миллисекунд
+  @Query(value = """
+      SELECT count(*) FROM outbox_relay_nodes
+      WHERE heartbeat_at > now() - :ttlMs * INTERVAL '1 millisecond'
+      """, nativeQuery = true)
+  long countAlive(@Param("ttlMs") long ttlMs);
+
+  // удаляет узлы, не присылавшие heartbeat дольше ttlMs миллисекунд
+  @Modifying
+  @Transactional
+  @Query(value = """
+      DELETE FROM outbox_relay_nodes
+      WHERE heartbeat_at < now() - :ttlMs * INTERVAL '1 millisecond'
+      """, nativeQuery = true)
+  int deleteStale(@Param("ttlMs") long ttlMs);
+}
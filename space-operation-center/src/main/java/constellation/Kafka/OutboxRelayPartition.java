@@ -0,0 +1,29 @@
+package constellation.Kafka;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// партиция outbox и ее аренда: owner_node пересылает события партиции, пока не истек lease_until
+@Entity
+@Table(name = "outbox_relay_partitions")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxRelayPartition {
+
+  @Id
+  @Column(name = "partition_id", nullable = false)
+  private Integer partitionId;
+
+  @Column(name = "owner_node")
+  private String ownerNode;
+
+  @Column(name = "lease_until")
+  private Instant leaseUntil;
+}
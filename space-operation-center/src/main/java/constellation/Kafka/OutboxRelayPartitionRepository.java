@@ -0,0 +1,82 @@
+package constellation.Kafka;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Репозиторий для таблицы outbox_relay_partitions: - partition_id; - owner_node; - lease_until
+ */
+public interface OutboxRelayPartitionRepository extends
+    JpaRepository<OutboxRelayPartition, Integer> {
+
+  // партиции, аренда которых у узла еще действует
+  @Query(value = """
+      SELECT partition_id FROM outbox_relay_partitions
+      WHERE owner_node = :node AND lease_until > now()
+      ORDER BY partition_id
+      """, nativeQuery = true)
+  List<Integer> findOwned(@Param("node") String nodeId);
+
+  // то же, но с блокировкой FOR SHARE до конца текущей транзакции:
+  // пока пачка событий не зафиксирована, другой узел не может перехватить эти партиции
+  @Query(value = """
+      SELECT partition_id FROM outbox_relay_partitions
+      WHERE owner_node = :node AND lease_until > now()
+      ORDER BY partition_id
+      FOR SHARE
+      """, nativeQuery = true)
+  List<Integer> lockOwned(@Param("node") String nodeId);
+
+  // продлевает еще действующую аренду партиций узла
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE outbox_relay_partitions
+      SET lease_until = now() + :leaseMs * INTERVAL '1 millisecond'
+      WHERE owner_node = :node AND lease_until > now()
+      """, nativeQuery = true)
+  int renew(@Param("node") String nodeId, @Param("leaseMs") long leaseMs);
+
+  // забирает до count свободных партиций или партиций с истекшей арендой
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE outbox_relay_partitions
+      SET owner_node = :node, lease_until = now() + :leaseMs * INTERVAL '1 millisecond'
+      WHERE partition_id IN (
+          SELECT partition_id FROM outbox_relay_partitions
+          WHERE owner_node IS NULL OR lease_until IS NULL OR lease_until <= now()
+          ORDER BY partition_id
+          LIMIT :count
+          FOR UPDATE SKIP LOCKED
+      )
+      """, nativeQuery = true)
+  int acquire(@Param("node") String nodeId, @Param("leaseMs") long leaseMs,
+      @Param("count") int count);
+
+  // отдает партиции узла другим узлам
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE outbox_relay_partitions
+      SET owner_node = NULL, lease_until = NULL
+      WHERE owner_node = :node AND partition_id IN (:partitions)
+      """, nativeQuery = true)
+  int release(@Param("node") String nodeId,
+      @Param("partitions") Collection<Integer> partitions);
+
+  // отдает все партиции узла (при остановке)
+  @Modifying
+  @Transactional
+  @Query(value = """
+      UPDATE outbox_relay_partitions
+      SET owner_node = NULL, lease_until = NULL
+      WHERE owner_node = :node
+      """, nativeQuery = true)
+  int releaseAll(@Param("node") String nodeId);
+}
@@ -1,76 +1,107 @@
 package constellation.Kafka;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import constellation.events.proto.SatelliteEvent;
-import constellation.events.proto.SatelliteEventType;
-import java.util.List;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Цикл пересылки outbox событий.
+ * <p>
+ * Цикл просыпается сразу после коммита транзакции, записавшей outbox событие ({@link #wakeUp()}
+ * вызывают {@link SatelliteEventPublisher} и {@link OutboxNotificationListener}), а опрос таблицы
+ * по таймеру остается страховкой. Интервал опроса адаптивный: пока в outbox есть работа, таблица
+ * опрашивается каждые {@code outbox.polling.min-interval} мс, в простое интервал удваивается до
+ * {@code outbox.polling.interval}.
+ * </p>
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OutboxScheduler {
 
-  private final OutboxEventRepository outboxRepository;
-  // KafkaTemplate из KafkaProducerConfig, внедряется через конструктор через @RequiredArgsConstructor
-  private final KafkaTemplate<String, byte[]> kafkaTemplate;
-  private final ObjectMapper objectMapper;
+  // пакетная отправка outbox событий, каждая пачка - отдельная транзакция
+  private final OutboxRelay outboxRelay;
 
-  // имя топика - из конфига или satellite-events по умолчанию
-  @Value("${KAFKA_TOPIC_SATELLITE_EVENTS:satellite-events}")
-  private String topic;
+  // отдельный поток цикла пересылки
+  private final ExecutorService relayThread = Executors.newSingleThreadExecutor(
+      r -> new Thread(r, "outbox-relay"));
+  // сигналы "появились новые события"
+  private final Semaphore wakeUps = new Semaphore(0);
 
-  // работает по расписанию
-  // в репозитории смотрит записи со статусом PENDING (которые надо обработать)
-  // в цикле проходится по ним - создает protobuf структуры и через kafkaTemplate отправляет
-  @Scheduled(fixedDelayString = "${outbox.polling.interval:5000}")
-  public void processOutbox() {
-    List<OutboxEvent> pendingEvents = outboxRepository.findByStatus("PENDING");
-    for (OutboxEvent outboxEvent : pendingEvents) {
-      try {
-        // структура protobuf (event_id, SatelliteEventType (enum), satellite_id
-        SatelliteEvent event = buildEvent(outboxEvent);
-        byte[] payload = event.toByteArray();
-        kafkaTemplate.send(topic, outboxEvent.getAggregateId(), payload)
-            .get(10, java.util.concurrent.TimeUnit.SECONDS);
-        // после отправки в репозитории транзакция по изменению поля на SENT
-        markAsSent(outboxEvent);
-        log.info("Outbox событие {} отправлено при помощи Kafka, спутник {}",
-            outboxEvent.getId(), outboxEvent.getAggregateId());
-      } catch (Exception e) {
-        log.error("Ошибка обработки outbox события {}", outboxEvent.getId(), e);
+  // максимальный интервал опроса (в простое)
+  @Value("${outbox.polling.interval:5000}")
+  private long maxIntervalMs;
+
+  // минимальный интервал опроса (пока есть работа)
+  @Value("${outbox.polling.min-interval:100}")
+  private long minIntervalMs;
+
+  private volatile boolean running = true;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    relayThread.submit(this::runLoop);
+  }
+
+  // будит цикл пересылки; несколько сигналов подряд схлопываются в одну итерацию
+  public void wakeUp() {
+    wakeUps.release();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    wakeUp();
+    relayThread.shutdown();
+    try {
+      if (!relayThread.awaitTermination(5, TimeUnit.SECONDS)) {
+        relayThread.shutdownNow();
       }
+    } catch (InterruptedException e) {
+      relayThread.shutdownNow();
+      Thread.currentThread().interrupt();
     }
   }
 
-  // отмечает в таблице outbox_events - в строке изменяет поле на SENT
-  @Transactional
-  protected void markAsSent(OutboxEvent event) {
-    event.setStatus("SENT");
-    outboxRepository.save(event);
+  private void runLoop() {
+    long intervalMs = minIntervalMs;
+    while (running) {
+      int relayed = processOutbox();
+      intervalMs = relayed > 0 ? minIntervalMs : Math.min(maxIntervalMs, intervalMs * 2);
+      try {
+        if (wakeUps.tryAcquire(intervalMs, TimeUnit.MILLISECONDS)) {
+          wakeUps.drainPermits();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
   }
 
-  // структура protobuf (event_id, SatelliteEventType (enum), satellite_id
-  private SatelliteEvent buildEvent(OutboxEvent outboxEvent)
-      throws JsonProcessingException {
-    // берется поле payload из outboxEvent
-    JsonNode json = objectMapper.readTree(outboxEvent.getPayload());
-    // берется из payload значение поля type
-    SatelliteEventType type = SatelliteEventType.valueOf(
-        json.get("type").asText());
-    // берутся из payload значения других полей
-    return SatelliteEvent.newBuilder()
-        .setEventId(json.get("eventId").asText())
-        .setType(type)
-        .setSatelliteId(json.get("satelliteId").asLong())
-        .build();
+  // забирает из outbox_events пачки PENDING записей и отправляет их в kafka через OutboxRelay,
+  // пока пачки полными уходят в kafka (т.е. в таблице еще остались необработанные записи);
+  // если часть пачки не отправлена, следующая попытка - после интервала опроса, а не сразу
+  // возвращает общее количество отправленных записей
+  int processOutbox() {
+    int total = 0;
+    try {
+      int sent;
+      do {
+        sent = outboxRelay.relayBatch();
+        total += sent;
+      } while (running && sent > 0 && sent >= outboxRelay.getBatchSize());
+    } catch (Exception e) {
+      log.error("Ошибка обработки outbox", e);
+    }
+    return total;
   }
 }
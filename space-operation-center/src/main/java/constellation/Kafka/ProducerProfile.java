@@ -0,0 +1,36 @@
+package constellation.Kafka;
+
+import java.util.Map;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+/**
+ * Профили батчинга kafka producer (настройка {@code outbox.kafka.profile}).
+ * <ul>
+ *   <li>{@link #LOW_LATENCY} - сообщение уходит сразу, без сжатия;</li>
+ *   <li>{@link #BALANCED} - короткое ожидание для сбора пачки и сжатие lz4;</li>
+ *   <li>{@link #THROUGHPUT} - крупные пачки и сжатие zstd для разбора большого backlog.</li>
+ * </ul>
+ */
+public enum ProducerProfile {
+  LOW_LATENCY(0, 16 * 1024, "none"),
+  BALANCED(5, 64 * 1024, "lz4"),
+  THROUGHPUT(20, 256 * 1024, "zstd");
+
+  // сколько producer ждет, собирая пачку для партиции
+  private final int lingerMs;
+  // максимальный размер пачки для партиции в байтах
+  private final int batchSize;
+  private final String compressionType;
+
+  ProducerProfile(int lingerMs, int batchSize, String compressionType) {
+    this.lingerMs = lingerMs;
+    this.batchSize = batchSize;
+    this.compressionType = compressionType;
+  }
+
+  public void applyTo(Map<String, Object> config) {
+    config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+    config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+    config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+  }
+}
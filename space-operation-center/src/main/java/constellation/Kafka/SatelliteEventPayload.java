@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// json payload outbox событий, записанных до перехода на payload_bytes (читается OutboxRelay)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -1,12 +1,14 @@
 package constellation.Kafka;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import constellation.Model.Domain.Satellite.Satellite;
+import constellation.events.proto.SatelliteEvent;
+import constellation.events.proto.SatelliteEventType;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
@@ -14,41 +16,62 @@ import org.springframework.stereotype.Service;
 public class SatelliteEventPublisher {
 
   private final OutboxEventRepository outboxRepository;
-  private final ObjectMapper objectMapper;
+  // цикл пересылки outbox, будится сразу после коммита
+  private final OutboxScheduler outboxScheduler;
 
   // отправляет в psql таблицу запись outboxEvent о добавлении спутника
   public void publishSatelliteAdded(Satellite satellite) {
-    SatelliteEventPayload satelliteEventPayload = new SatelliteEventPayload(
-        UUID.randomUUID().toString(),
-        "SATELLITE_ADDED",
-        satellite.getId()
-    );
-    try {
-      String payloadJson = objectMapper.writeValueAsString(satelliteEventPayload);
-      OutboxEvent event = new OutboxEvent(
-          String.valueOf(satellite.getId()), "CREATED", payloadJson);
-      outboxRepository.save(event);
-      log.info("Сохранено outbox событие в репозиторий: спутник {} добавлен", satellite.getId());
-    } catch (JsonProcessingException e) {
-      throw new RuntimeException("Failed to serialize outbox payload", e);
-    }
+    saveEvent(satellite.getId(), SatelliteEventType.SATELLITE_ADDED, "CREATED");
+    log.info("Сохранено outbox событие в репозиторий: спутник {} добавлен", satellite.getId());
   }
 
   // отправляет в psql таблицу запись outboxEvent об удалении спутника
   public void publishSatelliteRemoved(Long satelliteId) {
-    SatelliteEventPayload satelliteEventPayload = new SatelliteEventPayload(
-        UUID.randomUUID().toString(),
-        "SATELLITE_REMOVED",
-        satelliteId
-    );
-    try {
-      String payloadJson = objectMapper.writeValueAsString(satelliteEventPayload);
-      OutboxEvent event = new OutboxEvent(
-          String.valueOf(satelliteId), "DELETED", payloadJson);
-      outboxRepository.save(event);
-      log.info("Сохранено outbox событие в репозиторий: спутник {} удален", satelliteId);
-    } catch (JsonProcessingException e) {
-      throw new RuntimeException("Failed to serialize outbox payload", e);
+    saveEvent(satelliteId, SatelliteEventType.SATELLITE_REMOVED, "DELETED");
+    log.info("Сохранено outbox событие в репозиторий: спутник {} удален", satelliteId);
+  }
+
+  // в outbox сохраняется уже сериализованный SatelliteEvent - OutboxRelay отправляет его без
+  // повторной сборки
+  private void saveEvent(Long satelliteId, SatelliteEventType type, String eventType) {
+    SatelliteEvent satelliteEvent = SatelliteEvent.newBuilder()
+        .setEventId(UUID.randomUUID().toString())
+        .setType(type)
+        .setSatelliteId(satelliteId)
+        .setOccurredAt(System.currentTimeMillis())
+        .build();
+    OutboxEvent event = new OutboxEvent(
+        String.valueOf(satelliteId), eventType, satelliteEvent.toByteArray());
+    outboxRepository.save(event);
+    wakeUpRelayAfterCommit();
+  }
+
+  // один раз на транзакцию регистрирует хук: перед коммитом NOTIFY для всех реплик
+  // (Postgres доставит его только после коммита), после коммита - пробуждение локального цикла
+  private void wakeUpRelayAfterCommit() {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      outboxScheduler.wakeUp();
+      return;
+    }
+    if (TransactionSynchronizationManager.hasResource(this)) {
+      return;
     }
+    TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void beforeCommit(boolean readOnly) {
+        outboxRepository.notifyRelays();
+      }
+
+      @Override
+      public void afterCommit() {
+        outboxScheduler.wakeUp();
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResource(SatelliteEventPublisher.this);
+      }
+    });
   }
 }
@@ -28,7 +28,7 @@ public class CommunicationSatellite extends Satellite {
   /**
    * Уровень потребления заряда батареи за одну миссию (5%).
    */
-  private static final double BATTERY_PER_MISSION = 0.05;
+  public static final double BATTERY_PER_MISSION = 0.05;
 
   /**
    * Пропускная способность канала связи в мегабитах в секунду (Мбит/с).
@@ -28,7 +28,7 @@ public class ImagingSatellite extends Satellite {
   /**
    * Уровень потребления заряда батареи за одну миссию (8%).
    */
-  private static final double BATTERY_PER_MISSION = 0.08;
+  public static final double BATTERY_PER_MISSION = 0.08;
 
   /**
    * Пространственное разрешение съёмки в метрах на пиксель.
@@ -6,11 +6,13 @@ import constellation.Model.Domain.Internal.SatelliteState.SatelliteState;
 import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.AttributeOverrides;
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.DiscriminatorColumn;
 import jakarta.persistence.DiscriminatorType;
 import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -18,10 +20,13 @@ import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.time.Instant;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -46,7 +51,7 @@ public abstract class Satellite {
   /**
    * Минимальный допустимый уровень заряда для активации спутника (20%).
    */
-  private static final double MIN_POSSIBLE_BATTERY_FOR_ACTIVATE = 0.20;
+  public static final double MIN_POSSIBLE_BATTERY_FOR_ACTIVATE = 0.20;
   /**
    * Флаг, включающий или отключающий подробный вывод в консоль при создании, активации и выполнении
    * операций со спутником.
@@ -88,6 +93,15 @@ public abstract class Satellite {
   @Column(name = "satellite_id")
   private Long id;
 
+  /**
+   * Версия строки: изменение спутника, загруженного до чужого коммита, отклоняется
+   * (оптимистическая блокировка), транзакция повторяется с новыми данными.
+   */
+  @Version
+  @Column(name = "version", nullable = false)
+  @Setter(AccessLevel.NONE)
+  private long version;
+
   @Column(name = "created_at")
   private Instant createdAt;
 
@@ -99,11 +113,18 @@ public abstract class Satellite {
   @ToString.Exclude
   private SatelliteConstellation constellation;
 
-  @Column(name = "outside_temperature")
-  private Double outsideTemperature;
-
-  @Column(name = "inside_temperature")
-  private Double insideTemperature;
+  /**
+   * Последняя телеметрия (таблица satellite_telemetry с тем же ключом). Загружается только при
+   * обращении. Колонка связи - ключ спутника, только для чтения: строку создает триггер БД, а
+   * JPA ее не вставляет и не меняет. Значение ключа известно без запроса, поэтому вместо строки
+   * создается прокси.
+   */
+  @OneToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "satellite_id", referencedColumnName = "satellite_id", insertable = false,
+      updatable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+  @ToString.Exclude
+  @Setter(AccessLevel.NONE)
+  private SatelliteTelemetry telemetry;
 
   /**
    * Конструктор спутника. Генерирует уникальное имя на основе переданного префикса и номера,
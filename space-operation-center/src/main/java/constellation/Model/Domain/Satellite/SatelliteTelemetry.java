@@ -0,0 +1,33 @@
+package constellation.Model.Domain.Satellite;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Последняя телеметрия спутника. Отдельная узкая таблица: частые обновления температур не
+ * переписывают строку satellites. Строка создается триггером при добавлении спутника и
+ * обновляется только записью телеметрии (TelemetryWriteBehind), поэтому для JPA она только
+ * для чтения. {@link Satellite#getTelemetry()} читает ее лениво по ключу спутника.
+ */
+@Entity
+@Immutable
+@Table(name = "satellite_telemetry")
+@Getter
+@NoArgsConstructor
+public class SatelliteTelemetry {
+
+  @Id
+  @Column(name = "satellite_id")
+  private Long satelliteId;
+
+  @Column(name = "outside_temperature")
+  private Double outsideTemperature;
+
+  @Column(name = "inside_temperature")
+  private Double insideTemperature;
+}
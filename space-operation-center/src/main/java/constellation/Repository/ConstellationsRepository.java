@@ -1,8 +1,11 @@
 package constellation.Repository;
 
 import constellation.Model.Domain.Constellation.SatelliteConstellation;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 
@@ -11,5 +14,12 @@ public interface ConstellationsRepository extends JpaRepository<SatelliteConstel
 
   Optional<SatelliteConstellation> findByConstellationName(String name);
 
+  // группировка вместе со спутниками и строками их подтипов - одним запросом
+  @EntityGraph(attributePaths = "satellites")
+  Optional<SatelliteConstellation> findWithSatellitesByConstellationName(String name);
+
   boolean existsByConstellationName(String name);
+
+  @Query("SELECT c.constellationName FROM SatelliteConstellation c ORDER BY c.constellationName")
+  List<String> findAllConstellationNames();
 }
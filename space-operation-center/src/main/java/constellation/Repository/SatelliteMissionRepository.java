@@ -0,0 +1,122 @@
+package constellation.Repository;
+
+import constellation.Model.Domain.Satellite.CommunicationSatellite;
+import constellation.Model.Domain.Satellite.ImagingSatellite;
+import constellation.Model.Domain.Satellite.Satellite;
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Миссии группировок одним UPDATE на тип спутника, без загрузки сущностей.
+ * <p>
+ * Миссия спутника сводится к списанию заряда за миссию своего типа (не ниже нуля), деактивации
+ * при заряде не выше {@link Satellite#MIN_POSSIBLE_BATTERY_FOR_ACTIVATE} и счетчику подтипа,
+ * поэтому для каждого типа выполняется один запрос: UPDATE активных спутников с RETURNING, UPDATE
+ * счетчиков подтипа по возвращенным строкам и подсчет неактивных спутников. Все части запроса
+ * видят один снимок данных, поэтому спутник, деактивированный этой миссией, не считается
+ * пропущенным. Запрос увеличивает версию строк, поэтому параллельные миссии через сущности
+ * получают конфликт оптимистической блокировки вместо потери списания.
+ * </p>
+ */
+@Repository
+@RequiredArgsConstructor
+public class SatelliteMissionRepository {
+
+  // %1$s - таблица подтипа, %2$s - обновление счетчиков подтипа, %3$s - условие на группировку
+  private static final String MISSION_SQL = """
+      WITH executed AS (
+        UPDATE satellites s
+        SET battery_level = GREATEST(s.battery_level - ?, 0),
+            is_active = GREATEST(s.battery_level - ?, 0) > ?,
+            updated_at = now(),
+            version = s.version + 1
+        FROM constellations c, %1$s t
+        WHERE s.constellation_id = c.constellation_id AND t.satellite_id = s.satellite_id
+          AND s.is_active %3$s
+        RETURNING c.constellation_name, s.satellite_id, s.is_active
+      )%2$s, done AS (
+        SELECT constellation_name, count(*) AS executed,
+               count(*) FILTER (WHERE NOT is_active) AS deactivated
+        FROM executed
+        GROUP BY constellation_name
+      ), skipped AS (
+        SELECT c.constellation_name, count(*) AS skipped
+        FROM satellites s
+        JOIN constellations c ON c.constellation_id = s.constellation_id
+        JOIN %1$s t ON t.satellite_id = s.satellite_id
+        WHERE NOT s.is_active %3$s
+        GROUP BY c.constellation_name
+      )
+      SELECT coalesce(d.constellation_name, k.constellation_name) AS constellation_name,
+             coalesce(d.executed, 0) AS executed,
+             coalesce(k.skipped, 0) AS skipped,
+             coalesce(d.deactivated, 0) AS deactivated
+      FROM done d
+      FULL JOIN skipped k ON k.constellation_name = d.constellation_name
+      """;
+
+  // ДЗЗ: снимок на каждую выполненную миссию
+  private static final String PHOTOS_TAKEN_SQL = """
+      , photos AS (
+        UPDATE imaging_satellites t SET photos_taken = t.photos_taken + 1
+        FROM executed e
+        WHERE t.satellite_id = e.satellite_id
+      )""";
+
+  private static final String CONSTELLATION_FILTER = "AND c.constellation_name = ?";
+
+  private static final RowMapper<ConstellationMissionResultDTO> RESULT_MAPPER = (rs, rowNum) ->
+      new ConstellationMissionResultDTO(
+          rs.getString("constellation_name"),
+          rs.getInt("executed"),
+          rs.getInt("skipped"),
+          rs.getInt("deactivated"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Выполняет миссию всеми спутниками группировки (или всех группировок).
+   *
+   * @param constellationName имя группировки, {@code null} - все группировки
+   * @return итоги по группировкам, в которых есть спутники
+   */
+  public List<ConstellationMissionResultDTO> executeMissions(String constellationName) {
+    Map<String, ConstellationMissionResultDTO> results = new LinkedHashMap<>();
+    merge(results, executeMissions("imaging_satellites", PHOTOS_TAKEN_SQL,
+        ImagingSatellite.BATTERY_PER_MISSION, constellationName));
+    merge(results, executeMissions("communication_satellites", "",
+        CommunicationSatellite.BATTERY_PER_MISSION, constellationName));
+    return new ArrayList<>(results.values());
+  }
+
+  private List<ConstellationMissionResultDTO> executeMissions(String typeTable,
+      String counters, double batteryPerMission, String constellationName) {
+    String filter = constellationName != null ? CONSTELLATION_FILTER : "";
+    String sql = MISSION_SQL.formatted(typeTable, counters, filter);
+    List<Object> args = new ArrayList<>(List.of(batteryPerMission, batteryPerMission,
+        Satellite.MIN_POSSIBLE_BATTERY_FOR_ACTIVATE));
+    if (constellationName != null) {
+      // условие стоит и в UPDATE, и в подсчете пропущенных
+      args.add(constellationName);
+      args.add(constellationName);
+    }
+    return jdbcTemplate.query(sql, RESULT_MAPPER, args.toArray());
+  }
+
+  private static void merge(Map<String, ConstellationMissionResultDTO> results,
+      List<ConstellationMissionResultDTO> typeResults) {
+    for (ConstellationMissionResultDTO result : typeResults) {
+      results.merge(result.getConstellationName(), result, (total, part) -> {
+        total.add(part);
+        return total;
+      });
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package constellation.Service.ConstellationService.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// итог миссии группировки: сколько спутников выполнили миссию, сколько пропустили (не активны)
+// и сколько из выполнивших деактивировано из-за низкого заряда
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConstellationMissionResultDTO {
+
+  private String constellationName;
+  private int executed;
+  private int skipped;
+  private int deactivated;
+
+  public void add(ConstellationMissionResultDTO other) {
+    executed += other.executed;
+    skipped += other.skipped;
+    deactivated += other.deactivated;
+  }
+}
@@ -5,6 +5,7 @@ import constellation.Model.Domain.Satellite.Satellite;
 import constellation.Repository.ConstellationsRepository;
 import constellation.Repository.SatellitesRepository;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -144,6 +145,15 @@ public class ConstellationService {
     return repository.findByConstellationName(constellationName).orElse(null);
   }
 
+  public boolean constellationExists(String constellationName) {
+    return repository.existsByConstellationName(constellationName);
+  }
+
+  @Transactional
+  public SatelliteConstellation constellationWithSatellites(String constellationName) {
+    return repository.findWithSatellitesByConstellationName(constellationName).orElse(null);
+  }
+
   @Transactional
   public Satellite satelliteByName(String constellationName, String name) {
     SatelliteConstellation constellation = repository.findByConstellationName(
@@ -164,4 +174,8 @@ public class ConstellationService {
     return (ArrayList<SatelliteConstellation>) repository.findAll();
   }
 
+  public List<String> constellationNames() {
+    return repository.findAllConstellationNames();
+  }
+
 }
@@ -0,0 +1,221 @@
+package constellation.Service.MissionEngine;
+
+import constellation.Model.Domain.Constellation.SatelliteConstellation;
+import constellation.Model.Domain.Exception.SpaceOperationException;
+import constellation.Model.Domain.Satellite.Satellite;
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
+import constellation.Service.ConstellationService.ServiceDB.ConstellationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Параллельное выполнение миссий группировок.
+ * <p>
+ * Миссия группировки выполняется в отдельной транзакции на виртуальном потоке. Число одновременных
+ * транзакций ограничено {@code mission-engine.max-concurrency}, чтобы миссии не забирали весь пул
+ * соединений БД. Миссии одной группировки выполняются по очереди: имя группировки отображается на
+ * одну из {@code mission-engine.lock-stripes} блокировок. Блокировка группировки берется раньше
+ * разрешения на транзакцию, поэтому ожидающие своей очереди миссии не занимают соединения.
+ * </p>
+ * <p>
+ * Строки спутников версионированы ({@link Satellite#getVersion()}). Если спутник изменила другая
+ * транзакция (миссия отдельного спутника, SQL миссия, другая реплика), коммит отклоняется, и
+ * миссия повторяется с новыми данными, всего не больше {@code mission-engine.max-attempts} раз.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MissionEngine {
+
+  private final ConstellationService constellationService;
+  private final PlatformTransactionManager transactionManager;
+  private final MeterRegistry meterRegistry;
+
+  // сколько транзакций миссий выполняется одновременно
+  @Value("${mission-engine.max-concurrency:8}")
+  private int maxConcurrency;
+
+  // число блокировок, между которыми распределяются группировки
+  @Value("${mission-engine.lock-stripes:64}")
+  private int lockStripes;
+
+  // попытки миссии группировки при конфликте версий
+  @Value("${mission-engine.max-attempts:5}")
+  private int maxAttempts;
+
+  // задержка перед повтором растет с номером попытки, плюс случайная добавка
+  @Value("${mission-engine.retry-backoff-ms:20}")
+  private long retryBackoffMs;
+
+  // виртуальный поток на миссию; ожидание блокировки и БД не занимает потоки платформы
+  private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("mission-", 0).factory());
+
+  // ReentrantLock, а не synchronized: ожидание не закрепляет виртуальный поток за потоком ОС
+  private ReentrantLock[] stripes;
+  private Semaphore transactions;
+  private TransactionTemplate transactionTemplate;
+
+  private Timer missionDuration;
+  private Counter retries;
+  private Counter failures;
+
+  @PostConstruct
+  public void start() {
+    stripes = new ReentrantLock[lockStripes];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    transactions = new Semaphore(maxConcurrency);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    missionDuration = Timer.builder("missions.engine.execution")
+        .description("Время транзакции миссии группировки")
+        .register(meterRegistry);
+    retries = Counter.builder("missions.engine.retries")
+        .description("Повторы миссий группировок после конфликта версий спутников")
+        .register(meterRegistry);
+    failures = Counter.builder("missions.engine.failures")
+        .description("Миссии группировок, не выполненные за все попытки")
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Ставит миссию группировки в очередь.
+   *
+   * @param constellationName имя группировки
+   * @return итог миссии; {@code null}, если группировки нет
+   */
+  public CompletableFuture<ConstellationMissionResultDTO> submit(String constellationName) {
+    return CompletableFuture.supplyAsync(() -> executeWithRetry(constellationName), executor);
+  }
+
+  /**
+   * Выполняет миссии всех группировок параллельно и ждет завершения всех миссий.
+   *
+   * @return итоги по группировкам
+   */
+  public List<ConstellationMissionResultDTO> executeAll() {
+    List<CompletableFuture<ConstellationMissionResultDTO>> futures = new ArrayList<>();
+    for (String constellationName : constellationService.constellationNames()) {
+      futures.add(submit(constellationName));
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      throw new SpaceOperationException("Миссии группировок выполнены не полностью",
+          e.getCause());
+    }
+    List<ConstellationMissionResultDTO> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<ConstellationMissionResultDTO> future : futures) {
+      ConstellationMissionResultDTO result = future.join();
+      // группировку удалили после получения списка
+      if (result != null) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  private ConstellationMissionResultDTO executeWithRetry(String constellationName) {
+    ReentrantLock stripe = stripes[Math.floorMod(constellationName.hashCode(), stripes.length)];
+    stripe.lock();
+    try {
+      for (int attempt = 1; ; attempt++) {
+        try {
+          return execute(constellationName);
+        } catch (OptimisticLockingFailureException e) {
+          if (attempt >= maxAttempts) {
+            failures.increment();
+            throw e;
+          }
+          retries.increment();
+          log.debug("Конфликт версий в миссии группировки {}, попытка {}", constellationName,
+              attempt);
+          pause(attempt);
+        }
+      }
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  // одна попытка: разрешение на транзакцию держится только на время транзакции
+  private ConstellationMissionResultDTO execute(String constellationName) {
+    transactions.acquireUninterruptibly();
+    try {
+      return missionDuration.record(() -> transactionTemplate.execute(
+          status -> executeInTransaction(constellationName)));
+    } finally {
+      transactions.release();
+    }
+  }
+
+  // группировка и спутники - одним запросом, изменения уходят пачкой UPDATE с проверкой версий
+  private ConstellationMissionResultDTO executeInTransaction(String constellationName) {
+    SatelliteConstellation constellation =
+        constellationService.constellationWithSatellites(constellationName);
+    if (constellation == null) {
+      return null;
+    }
+    int executed = 0;
+    int skipped = 0;
+    int deactivated = 0;
+    for (Satellite satellite : constellation.getSatellites()) {
+      if (!satellite.getState().isActive()) {
+        skipped++;
+        continue;
+      }
+      satellite.executeMission();
+      executed++;
+      if (!satellite.getState().isActive()) {
+        deactivated++;
+      }
+    }
+    return new ConstellationMissionResultDTO(constellationName, executed, skipped, deactivated);
+  }
+
+  private void pause(int attempt) {
+    long delayMs = retryBackoffMs * attempt
+        + ThreadLocalRandom.current().nextLong(retryBackoffMs + 1);
+    try {
+      Thread.sleep(delayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SpaceOperationException("Миссия группировки прервана", e);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import constellation.Model.Domain.Satellite.SatelliteParam.SatelliteParam;
 import constellation.Model.Factory.SatelliteFactory.SatelliteFactory;
 import constellation.Repository.SatellitesRepository;
 import constellation.Service.SatelliteService.SatelliteService;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
@@ -38,13 +39,22 @@ public class SatelliteServiceDB implements SatelliteService {
   }
 
 
+  // спутник, уже загруженный в этой транзакции, берется из контекста без запроса
   @Transactional
   @Override
   public void executeMission(Satellite satellite) {
-    Optional<Satellite> resultOpt = repository.findByName(satellite.getName());
+    Optional<Satellite> resultOpt = repository.findById(satellite.getId());
     resultOpt.ifPresent(Satellite::executeMission);
   }
 
+  // спутники уже загружены: миссии выполняются в памяти, изменения уходят при коммите
+  // пачками UPDATE (hibernate.jdbc.batch_size)
+  @Transactional
+  @Override
+  public void executeMissions(Collection<? extends Satellite> satellites) {
+    satellites.forEach(Satellite::executeMission);
+  }
+
   @Transactional
   public Optional<Satellite> findById(Long id) {
     return repository.findById(id);
@@ -3,10 +3,13 @@ package constellation.Service.SatelliteService;
 import constellation.Model.Domain.Exception.SpaceOperationException;
 import constellation.Model.Domain.Satellite.Satellite;
 import constellation.Model.Domain.Satellite.SatelliteParam.SatelliteParam;
+import java.util.Collection;
 
 public interface SatelliteService {
 
   Satellite createSatellite(SatelliteParam param) throws SpaceOperationException;
 
   void executeMission(Satellite satellite);
+
+  void executeMissions(Collection<? extends Satellite> satellites);
 }
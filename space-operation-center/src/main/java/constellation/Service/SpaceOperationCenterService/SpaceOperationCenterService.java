@@ -9,14 +9,18 @@ import constellation.Model.Domain.Satellite.ImagingSatellite;
 import constellation.Model.Domain.Satellite.Satellite;
 import constellation.Model.Domain.Satellite.SatelliteParam.SatelliteParam;
 import constellation.Model.Domain.Satellite.SatelliteParam.SatelliteType;
+import constellation.Repository.SatelliteMissionRepository;
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
 import constellation.Service.ConstellationService.DTO.ConstellationStatusDTO;
 import constellation.Service.ConstellationService.ServiceDB.ConstellationService;
+import constellation.Service.MissionEngine.MissionEngine;
 import constellation.Service.SatelliteService.SatelliteService;
 import constellation.Service.SpaceOperationCenterService.MissionRequest.MissionRequest;
 import jakarta.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -28,6 +32,10 @@ public class SpaceOperationCenterService {
   private final ConstellationService constellationService;
   // сервис управления спутниками
   private final SatelliteService satelliteService;
+  // миссии группировок одним UPDATE на тип спутника, без загрузки сущностей
+  private final SatelliteMissionRepository missionRepository;
+  // параллельные миссии группировок, каждая в своей транзакции
+  private final MissionEngine missionEngine;
   // брокер событий SatelliteEventPublisher
   // добавляет строки в outboxRepository, в полях статус везде PENDING
   // обработчик outboxScheduler по расписанию чекает outboxRepository,
@@ -62,27 +70,65 @@ public class SpaceOperationCenterService {
   }
 
 
+  // без общей транзакции: миссия спутника выполняется в транзакции SatelliteService, миссия
+  // группировки - в движке миссий, по очереди с другими миссиями группировки и с повтором при
+  // конфликте версий спутников
   @LogExecutionTime
-  @Transactional
   public void executeMission(MissionRequest request) {
-    SatelliteConstellation currentConstellation = constellationService.constellationFromRepository(
-        request.getConstellationName());
-    if (currentConstellation != null) {
-      switch (request.getTargetType()) {
-        case SINGLE_SATELLITE -> {
+    switch (request.getTargetType()) {
+      case SINGLE_SATELLITE -> {
+        SatelliteConstellation currentConstellation =
+            constellationService.constellationFromRepository(request.getConstellationName());
+        if (currentConstellation != null) {
           Satellite satellite = constellationService.satelliteByName(
               currentConstellation.getConstellationName(), request.getSatelliteName());
           satelliteService.executeMission(satellite);
         }
-        case CONSTELLATION -> {
-          for (Satellite satellite : currentConstellation.getSatellites()) {
-            satelliteService.executeMission(satellite);
-          }
-        }
       }
+      case CONSTELLATION -> executeConstellationMissionInParallel(request.getConstellationName());
+    }
+  }
+
+  /**
+   * Выполняет миссию всеми спутниками группировки запросами к БД, без загрузки сущностей.
+   *
+   * @param constellationName имя группировки, {@code null} - все группировки
+   * @return итоги по группировкам; {@code null}, если группировки с таким именем нет
+   */
+  @LogExecutionTime
+  @Transactional
+  public List<ConstellationMissionResultDTO> executeMissionsInDatabase(String constellationName) {
+    if (constellationName != null && !constellationService.constellationExists(constellationName)) {
+      return null;
+    }
+    List<ConstellationMissionResultDTO> results = missionRepository.executeMissions(
+        constellationName);
+    if (constellationName != null && results.isEmpty()) {
+      // в группировке нет спутников
+      results.add(new ConstellationMissionResultDTO(constellationName, 0, 0, 0));
+    }
+    return results;
+  }
+
+  // без общей транзакции: миссии выполняются в транзакциях движка на виртуальных потоках
+  @LogExecutionTime
+  public ConstellationMissionResultDTO executeConstellationMissionInParallel(
+      String constellationName) {
+    try {
+      return missionEngine.submit(constellationName).join();
+    } catch (CompletionException e) {
+      // конфликт версий после всех попыток отдается как есть (409 в контроллере)
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
     }
   }
 
+  @LogExecutionTime
+  public List<ConstellationMissionResultDTO> executeAllConstellationMissionsInParallel() {
+    return missionEngine.executeAll();
+  }
 
   @LogExecutionTime
   @Transactional
@@ -0,0 +1,16 @@
+-- узлы space-operation-center, которые участвуют в пересылке outbox
+CREATE TABLE outbox_relay_nodes (
+    node_id TEXT PRIMARY KEY,
+    heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- партиции outbox: событие принадлежит партиции mod(abs(hashtext(aggregate_id)), N),
+-- где N - количество строк в этой таблице
+CREATE TABLE outbox_relay_partitions (
+    partition_id INTEGER PRIMARY KEY,
+    owner_node TEXT,
+    lease_until TIMESTAMPTZ
+);
+
+INSERT INTO outbox_relay_partitions (partition_id)
+SELECT generate_series(0, 15);
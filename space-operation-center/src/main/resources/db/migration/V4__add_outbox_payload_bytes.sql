@@ -0,0 +1,6 @@
+-- готовое к отправке protobuf сообщение SatelliteEvent
+-- старые строки продолжают хранить json в payload
+ALTER TABLE outbox_events ADD COLUMN payload_bytes BYTEA;
+ALTER TABLE outbox_events ALTER COLUMN payload DROP NOT NULL;
+ALTER TABLE outbox_events ADD CONSTRAINT outbox_payload_present
+    CHECK (payload IS NOT NULL OR payload_bytes IS NOT NULL);
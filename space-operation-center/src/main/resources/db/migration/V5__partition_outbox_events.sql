@@ -0,0 +1,54 @@
+-- outbox_events становится секционированной по created_at таблицей (секция на сутки, UTC),
+-- чтобы отправленные события удалялись целыми секциями (см. OutboxPartitionMaintenance)
+ALTER TABLE outbox_events RENAME TO outbox_events_legacy;
+ALTER TABLE outbox_events_legacy RENAME CONSTRAINT outbox_events_pkey TO outbox_events_legacy_pkey;
+DROP INDEX idx_outbox_status;
+DROP INDEX idx_outbox_created_at;
+
+CREATE SEQUENCE outbox_event_id_seq AS BIGINT;
+SELECT setval('outbox_event_id_seq', COALESCE((SELECT max(id) FROM outbox_events_legacy), 0) + 1, false);
+
+CREATE TABLE outbox_events (
+    id BIGINT NOT NULL DEFAULT nextval('outbox_event_id_seq'),
+    aggregate_id TEXT NOT NULL,
+    event_type TEXT NOT NULL,
+    payload TEXT,
+    payload_bytes BYTEA,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    status TEXT NOT NULL DEFAULT 'PENDING',
+
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT outbox_status_check CHECK (status IN ('PENDING', 'SENT')),
+    CONSTRAINT outbox_payload_present CHECK (payload IS NOT NULL OR payload_bytes IS NOT NULL)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE outbox_event_id_seq OWNED BY outbox_events.id;
+
+-- строки вне созданных секций (например, если обслуживание секций не запускалось)
+CREATE TABLE outbox_events_default PARTITION OF outbox_events DEFAULT;
+
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN
+        SELECT generate_series((now() AT TIME ZONE 'UTC')::date,
+                               (now() AT TIME ZONE 'UTC')::date + 3,
+                               INTERVAL '1 day')::date
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE outbox_events_p%s PARTITION OF outbox_events FOR VALUES FROM (%L) TO (%L)',
+            to_char(day, 'YYYYMMDD'), day || ' 00:00:00+00', (day + 1) || ' 00:00:00+00');
+    END LOOP;
+END $$;
+
+-- переносятся только неотправленные события, отправленные больше не нужны
+INSERT INTO outbox_events (id, aggregate_id, event_type, payload, payload_bytes, created_at, status)
+SELECT id, aggregate_id, event_type, payload, payload_bytes, created_at, status
+FROM outbox_events_legacy
+WHERE status = 'PENDING';
+
+DROP TABLE outbox_events_legacy;
+
+-- частичный индекс: пересылка ищет только PENDING строки, его размер не зависит от истории
+CREATE INDEX idx_outbox_pending ON outbox_events (id) WHERE status = 'PENDING';
@@ -0,0 +1,32 @@
+-- последняя телеметрия спутника выносится из широкой satellites в узкую таблицу:
+-- частые UPDATE температур не переписывают строку с именем, состоянием и зарядом и не задевают
+-- индексы satellites; колонки satellite_telemetry не индексируются, кроме ключа, поэтому
+-- обновления HOT, а fillfactor 50 оставляет на странице место для новой версии строки
+CREATE TABLE satellite_telemetry (
+    satellite_id BIGINT PRIMARY KEY REFERENCES satellites(satellite_id) ON DELETE CASCADE,
+    outside_temperature DOUBLE PRECISION,
+    inside_temperature DOUBLE PRECISION
+) WITH (fillfactor = 50);
+
+-- мертвые версии строк убираются раньше, чем по умолчанию (20% таблицы)
+ALTER TABLE satellite_telemetry SET (autovacuum_vacuum_scale_factor = 0.02);
+
+INSERT INTO satellite_telemetry (satellite_id, outside_temperature, inside_temperature)
+SELECT satellite_id, outside_temperature, inside_temperature
+FROM satellites;
+
+-- строка телеметрии создается вместе со спутником, запись телеметрии только обновляет ее
+CREATE FUNCTION create_satellite_telemetry() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO satellite_telemetry (satellite_id) VALUES (NEW.satellite_id)
+    ON CONFLICT (satellite_id) DO NOTHING;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER satellites_create_telemetry
+    AFTER INSERT ON satellites
+    FOR EACH ROW EXECUTE FUNCTION create_satellite_telemetry();
+
+ALTER TABLE satellites DROP COLUMN outside_temperature;
+ALTER TABLE satellites DROP COLUMN inside_temperature;
@@ -0,0 +1,3 @@
+-- версия строки спутника для оптимистической блокировки: параллельные миссии не теряют
+-- списание заряда, конфликтующая транзакция повторяется
+ALTER TABLE satellites ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
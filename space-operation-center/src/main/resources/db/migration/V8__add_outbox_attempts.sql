@@ -0,0 +1,7 @@
+-- неудачные попытки отправки события; событие, которое нельзя отправить (неразбираемый payload,
+-- отказ kafka без возможности повтора), получает статус FAILED и не блокирует свой спутник
+ALTER TABLE outbox_events ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE outbox_events DROP CONSTRAINT outbox_status_check;
+ALTER TABLE outbox_events ADD CONSTRAINT outbox_status_check
+    CHECK (status IN ('PENDING', 'SENT', 'FAILED'));
@@ -0,0 +1,25 @@
+-- DETACH PARTITION ... CONCURRENTLY нельзя выполнить, пока у таблицы есть секция по умолчанию
+-- (см. OutboxPartitionMaintenance). Строки секции по умолчанию переносятся в суточные секции,
+-- новые события всегда попадают в секции, созданные обслуживанием заранее
+ALTER TABLE outbox_events DETACH PARTITION outbox_events_default;
+
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN
+        SELECT DISTINCT (created_at AT TIME ZONE 'UTC')::date FROM outbox_events_default
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS outbox_events_p%s PARTITION OF outbox_events '
+                'FOR VALUES FROM (%L) TO (%L)',
+            to_char(day, 'YYYYMMDD'), day || ' 00:00:00+00', (day + 1) || ' 00:00:00+00');
+    END LOOP;
+END $$;
+
+INSERT INTO outbox_events (id, aggregate_id, event_type, payload, payload_bytes, created_at,
+                           status, attempts)
+SELECT id, aggregate_id, event_type, payload, payload_bytes, created_at, status, attempts
+FROM outbox_events_default;
+
+DROP TABLE outbox_events_default;
@@ -3,14 +3,18 @@ package constellation;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import constellation.Model.Domain.Satellite.CommunicationSatellite;
+import constellation.Model.Domain.Satellite.Satellite;
 import constellation.Model.Domain.Satellite.SatelliteParam.CommunicationSatelliteParam;
 import constellation.Model.Domain.Satellite.SatelliteParam.SatelliteType;
 import constellation.Model.Factory.SatelliteFactory.Impl.CommunicationSatelliteFactory;
 import constellation.Repository.ConstellationsRepository;
 import constellation.Service.ConstellationService.ServiceDB.ConstellationService;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
 
@@ -24,6 +28,9 @@ public class ConstellationDBRepositoryModuleTest {
   @Autowired
   private ConstellationService constellationService;
 
+  @Autowired
+  private TestEntityManager entityManager;
+
   @Test
   void shouldCreateAndFindConstellation() {
     // Given
@@ -59,4 +66,54 @@ public class ConstellationDBRepositoryModuleTest {
     assertThat(satellites).hasSize(1);
     assertThat(satellites.get(0).getName()).isEqualTo("COMM");
   }
+
+  @Test
+  void shouldFetchConstellationWithSatellites() {
+    // Given
+    constellationService.createAndSaveConstellation("Orbit-2");
+    var factory = new CommunicationSatelliteFactory();
+    constellationService.addSatelliteToConstellation("Orbit-2",
+        factory.createSatelliteWithParameter(
+            new CommunicationSatelliteParam(SatelliteType.COMMUNICATION, "COMM-2", 80, 500)));
+    entityManager.flush();
+    entityManager.clear();
+
+    // When
+    var constellation = constellationRepository.findWithSatellitesByConstellationName("Orbit-2")
+        .orElseThrow();
+
+    // Then
+    assertThat(Hibernate.isInitialized(constellation.getSatellites())).isTrue();
+    assertThat(constellation.getSatellites()).hasSize(1);
+    assertThat(constellation.getSatellites().get(0)).isInstanceOf(CommunicationSatellite.class);
+  }
+
+  @Test
+  void shouldReadSatelliteTelemetryLazily() {
+    // Given
+    constellationService.createAndSaveConstellation("Orbit-3");
+    var factory = new CommunicationSatelliteFactory();
+    var satellite = factory.createSatelliteWithParameter(
+        new CommunicationSatelliteParam(SatelliteType.COMMUNICATION, "COMM-3", 80, 500));
+    constellationService.addSatelliteToConstellation("Orbit-3", satellite);
+    entityManager.flush();
+    // в PostgreSQL строку создает триггер, в H2 она вставляется тестом
+    entityManager.getEntityManager().createNativeQuery("""
+            INSERT INTO satellite_telemetry (satellite_id, outside_temperature, inside_temperature)
+            VALUES (?1, ?2, ?3)
+            """)
+        .setParameter(1, satellite.getId())
+        .setParameter(2, -120.5)
+        .setParameter(3, 21.0)
+        .executeUpdate();
+    entityManager.clear();
+
+    // When
+    Satellite found = entityManager.find(Satellite.class, satellite.getId());
+
+    // Then
+    assertThat(Hibernate.isInitialized(found.getTelemetry())).isFalse();
+    assertThat(found.getTelemetry().getOutsideTemperature()).isEqualTo(-120.5);
+    assertThat(found.getTelemetry().getInsideTemperature()).isEqualTo(21.0);
+  }
 }
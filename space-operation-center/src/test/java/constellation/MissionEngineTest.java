@@ -0,0 +1,119 @@
+package constellation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import constellation.Model.Domain.Constellation.SatelliteConstellation;
+import constellation.Model.Domain.Satellite.CommunicationSatellite;
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
+import constellation.Service.ConstellationService.ServiceDB.ConstellationService;
+import constellation.Service.MissionEngine.MissionEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class MissionEngineTest {
+
+  private ConstellationService constellationService;
+  private SimpleMeterRegistry meterRegistry;
+  private MissionEngine missionEngine;
+
+  @BeforeEach
+  void setUp() {
+    constellationService = mock(ConstellationService.class);
+    meterRegistry = new SimpleMeterRegistry();
+    // транзакции не нужны: группировки отдает заглушка сервиса
+    missionEngine = new MissionEngine(constellationService, mock(PlatformTransactionManager.class),
+        meterRegistry);
+    ReflectionTestUtils.setField(missionEngine, "maxConcurrency", 8);
+    ReflectionTestUtils.setField(missionEngine, "lockStripes", 64);
+    ReflectionTestUtils.setField(missionEngine, "maxAttempts", 3);
+    ReflectionTestUtils.setField(missionEngine, "retryBackoffMs", 1L);
+    missionEngine.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    missionEngine.shutdown();
+  }
+
+  @Test
+  void shouldExecuteMissionsOfOneConstellationOneAfterAnother() {
+    // Given
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    when(constellationService.constellationWithSatellites("Orbit-1")).thenAnswer(invocation -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      Thread.sleep(20);
+      running.decrementAndGet();
+      return constellation("Orbit-1", 90);
+    });
+
+    // When
+    List<CompletableFuture<ConstellationMissionResultDTO>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(missionEngine.submit("Orbit-1"));
+    }
+    futures.forEach(CompletableFuture::join);
+
+    // Then
+    assertThat(maxRunning.get()).isEqualTo(1);
+    verify(constellationService, times(5)).constellationWithSatellites("Orbit-1");
+  }
+
+  @Test
+  void shouldRetryMissionAfterVersionConflict() {
+    // Given
+    when(constellationService.constellationWithSatellites("Orbit-2"))
+        .thenThrow(new OptimisticLockingFailureException("спутник изменен"))
+        .thenReturn(constellation("Orbit-2", 24));
+
+    // When
+    ConstellationMissionResultDTO result = missionEngine.submit("Orbit-2").join();
+
+    // Then
+    assertThat(result.getExecuted()).isEqualTo(1);
+    assertThat(result.getDeactivated()).isEqualTo(1);
+    assertThat(meterRegistry.counter("missions.engine.retries").count()).isEqualTo(1);
+    assertThat(meterRegistry.counter("missions.engine.failures").count()).isZero();
+  }
+
+  @Test
+  void shouldFailAfterMaxAttempts() {
+    // Given
+    when(constellationService.constellationWithSatellites(any()))
+        .thenThrow(new OptimisticLockingFailureException("спутник изменен"));
+
+    // When / Then
+    assertThatThrownBy(() -> missionEngine.submit("Orbit-3").join())
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(OptimisticLockingFailureException.class);
+    verify(constellationService, times(3)).constellationWithSatellites("Orbit-3");
+    assertThat(meterRegistry.counter("missions.engine.failures").count()).isEqualTo(1);
+  }
+
+  // группировка из одного активного спутника связи с зарядом batteryPercent
+  private static SatelliteConstellation constellation(String name, double batteryPercent) {
+    SatelliteConstellation constellation = new SatelliteConstellation.ConstellationBuilder()
+        .setConstellationName(name)
+        .build();
+    CommunicationSatellite satellite = new CommunicationSatellite(name + "-COMM", batteryPercent);
+    satellite.activate();
+    constellation.getSatellites().add(satellite);
+    return constellation;
+  }
+}
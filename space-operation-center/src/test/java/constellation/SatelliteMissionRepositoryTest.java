@@ -0,0 +1,161 @@
+package constellation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import constellation.Model.Domain.Constellation.SatelliteConstellation;
+import constellation.Model.Domain.Satellite.CommunicationSatellite;
+import constellation.Model.Domain.Satellite.ImagingSatellite;
+import constellation.Model.Domain.Satellite.Satellite;
+import constellation.Repository.SatelliteMissionRepository;
+import constellation.Service.ConstellationService.DTO.ConstellationMissionResultDTO;
+import constellation.Service.ConstellationService.ServiceDB.ConstellationService;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+// SQL миссий (SatelliteMissionRepository) должен давать тот же результат, что и performMission
+// сущностей. Запрос использует возможности PostgreSQL, поэтому тест идет на PostgreSQL со схемой
+// из миграций Flyway, а не на H2
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+    "spring.flyway.enabled=true",
+    "spring.jpa.hibernate.ddl-auto=none"
+})
+@Import({ConstellationService.class, SatelliteMissionRepository.class})
+public class SatelliteMissionRepositoryTest {
+
+  @Container
+  @ServiceConnection
+  static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+  // спутник фикстуры: тип, заряд в процентах, активен ли перед миссией
+  private record SatelliteSpec(String name, boolean imaging, double batteryPercent,
+      boolean active) {
+
+  }
+
+  private static final List<SatelliteSpec> FIXTURE = List.of(
+      // остается активным
+      new SatelliteSpec("IMG-FULL", true, 90, true),
+      // после миссии выше порога
+      new SatelliteSpec("IMG-ABOVE", true, 29, true),
+      // после миссии ниже порога - деактивация
+      new SatelliteSpec("IMG-BELOW", true, 25, true),
+      // заряд меньше расхода - заряд не ниже нуля
+      new SatelliteSpec("IMG-EMPTY", true, 3, true),
+      // неактивный - пропускается
+      new SatelliteSpec("IMG-OFF", true, 80, false),
+      new SatelliteSpec("COMM-FULL", false, 90, true),
+      // после миссии на пороге - деактивация (порог включительно)
+      new SatelliteSpec("COMM-EDGE", false, 25, true),
+      new SatelliteSpec("COMM-EMPTY", false, 2, true),
+      new SatelliteSpec("COMM-OFF", false, 60, false)
+  );
+
+  @Autowired
+  private SatelliteMissionRepository missionRepository;
+
+  @Autowired
+  private ConstellationService constellationService;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Test
+  void shouldMatchDomainMissionResults() {
+    // Given
+    createFixture("SQL-Group", "SQL-");
+    createFixture("Domain-Group", "DOM-");
+    entityManager.flush();
+    entityManager.clear();
+
+    // When
+    List<ConstellationMissionResultDTO> sqlResults =
+        missionRepository.executeMissions("SQL-Group");
+    ConstellationMissionResultDTO domainResult = executeDomainMissions("Domain-Group");
+    entityManager.flush();
+    entityManager.clear();
+
+    // Then
+    assertThat(sqlResults).hasSize(1);
+    ConstellationMissionResultDTO sqlResult = sqlResults.get(0);
+    assertThat(sqlResult.getConstellationName()).isEqualTo("SQL-Group");
+    assertThat(sqlResult.getExecuted()).isEqualTo(domainResult.getExecuted()).isEqualTo(7);
+    assertThat(sqlResult.getSkipped()).isEqualTo(domainResult.getSkipped()).isEqualTo(2);
+    assertThat(sqlResult.getDeactivated()).isEqualTo(domainResult.getDeactivated())
+        .isEqualTo(4);
+
+    Map<String, Satellite> sqlSatellites = satellitesBySpecName("SQL-Group", "SQL-");
+    Map<String, Satellite> domainSatellites = satellitesBySpecName("Domain-Group", "DOM-");
+    for (SatelliteSpec spec : FIXTURE) {
+      Satellite sql = sqlSatellites.get(spec.name());
+      Satellite domain = domainSatellites.get(spec.name());
+      assertThat(sql.getEnergy().getBatteryLevel()).as(spec.name())
+          .isEqualTo(domain.getEnergy().getBatteryLevel());
+      assertThat(sql.getState().isActive()).as(spec.name())
+          .isEqualTo(domain.getState().isActive());
+      if (spec.imaging()) {
+        assertThat(((ImagingSatellite) sql).getPhotosTaken()).as(spec.name())
+            .isEqualTo(((ImagingSatellite) domain).getPhotosTaken());
+      }
+    }
+    assertThat(sqlSatellites.get("IMG-EMPTY").getEnergy().getBatteryLevel()).isZero();
+    assertThat(sqlSatellites.get("COMM-EDGE").getState().isActive()).isFalse();
+    assertThat(((ImagingSatellite) sqlSatellites.get("IMG-OFF")).getPhotosTaken()).isZero();
+  }
+
+  private void createFixture(String constellationName, String prefix) {
+    constellationService.createAndSaveConstellation(constellationName);
+    for (SatelliteSpec spec : FIXTURE) {
+      Satellite satellite = spec.imaging()
+          ? new ImagingSatellite(prefix + spec.name(), spec.batteryPercent(), 1.0)
+          : new CommunicationSatellite(prefix + spec.name(), spec.batteryPercent(), 500);
+      if (spec.active()) {
+        // в обход activate(): спутник мог разрядиться уже активным
+        satellite.getState().activate();
+      }
+      constellationService.addSatelliteToConstellation(constellationName, satellite);
+    }
+  }
+
+  // миссия через сущности - так же, как ее выполняет MissionEngine
+  private ConstellationMissionResultDTO executeDomainMissions(String constellationName) {
+    SatelliteConstellation constellation =
+        constellationService.constellationWithSatellites(constellationName);
+    ConstellationMissionResultDTO result =
+        new ConstellationMissionResultDTO(constellationName, 0, 0, 0);
+    for (Satellite satellite : constellation.getSatellites()) {
+      if (!satellite.getState().isActive()) {
+        result.setSkipped(result.getSkipped() + 1);
+        continue;
+      }
+      satellite.executeMission();
+      result.setExecuted(result.getExecuted() + 1);
+      if (!satellite.getState().isActive()) {
+        result.setDeactivated(result.getDeactivated() + 1);
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Satellite> satellitesBySpecName(String constellationName, String prefix) {
+    return constellationService.constellationWithSatellites(constellationName).getSatellites()
+        .stream()
+        .collect(Collectors.toMap(satellite -> satellite.getName().substring(prefix.length()),
+            Function.identity()));
+  }
+}
@@ -0,0 +1,128 @@
+package TelemetryService.Kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Фильтр недавно обработанных событий в памяти перед таблицей inbox_events.
+ * <p>
+ * LRU последних {@code telemetry.inbox.filter.recent-size} event_id. Событие из LRU - точно
+ * повтор и отбрасывается без обращения к БД. Все остальные события проверяются в БД вставкой
+ * через {@code ON CONFLICT DO NOTHING}: отличить новое событие от старого повтора без БД нельзя,
+ * потому что события той же партиции могли быть записаны другим экземпляром до ребалансировки.
+ * </p>
+ * <p>
+ * При старте заполняется последними event_id из inbox_events.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InboxDedupFilter {
+
+  private final InboxEventRepository inboxRepository;
+  private final MeterRegistry meterRegistry;
+
+  // размер LRU недавних event_id
+  @Value("${telemetry.inbox.filter.recent-size:10000}")
+  private int recentSize;
+
+  private Map<String, Boolean> recent;
+
+  private Counter recentHits;
+  private Counter dbChecks;
+
+  @PostConstruct
+  public void init() {
+    recent = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > recentSize;
+      }
+    };
+    registerMetrics();
+
+    // слушатели kafka стартуют после инициализации бинов - LRU уже заполнен
+    // event_id приходят от новых к старым, в LRU добавляются от старых к новым
+    List<String> eventIds = new ArrayList<>(recentSize);
+    inboxRepository.forEachRecentEventId(recentSize, eventIds::add);
+    record(eventIds.reversed());
+    log.info("Фильтр inbox заполнен: {} event_id", eventIds.size());
+  }
+
+  // true - событие недавно обработано и точно повтор; false - решает БД
+  // проверка учитывается в метриках
+  public synchronized boolean isRecent(String eventId) {
+    if (recent.containsKey(eventId)) {
+      recentHits.increment();
+      return true;
+    }
+    dbChecks.increment();
+    return false;
+  }
+
+  // запоминает event_id после коммита текущей транзакции
+  // (при откате события будут получены повторно и не должны считаться обработанными)
+  public void recordAfterCommit(Collection<String> eventIds) {
+    if (eventIds.isEmpty()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      record(eventIds);
+      return;
+    }
+    List<String> ids = List.copyOf(eventIds);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        record(ids);
+      }
+    });
+  }
+
+  private synchronized void record(Collection<String> eventIds) {
+    for (String eventId : eventIds) {
+      recent.put(eventId, Boolean.TRUE);
+    }
+  }
+
+  private synchronized int recentCount() {
+    return recent.size();
+  }
+
+  // доля проверенных событий, для которых понадобилось обращение к БД
+  private double dbCheckRatio() {
+    double total = recentHits.count() + dbChecks.count();
+    return total == 0 ? 0 : dbChecks.count() / total;
+  }
+
+  private void registerMetrics() {
+    recentHits = Counter.builder("inbox.dedup.checks")
+        .description("Проверки event_id фильтром inbox")
+        .tag("result", "recent")
+        .register(meterRegistry);
+    dbChecks = Counter.builder("inbox.dedup.checks")
+        .description("Проверки event_id фильтром inbox")
+        .tag("result", "db")
+        .register(meterRegistry);
+    Gauge.builder("inbox.dedup.recent.size", this, InboxDedupFilter::recentCount)
+        .description("Число event_id в LRU фильтра inbox")
+        .register(meterRegistry);
+    Gauge.builder("inbox.dedup.db-check-ratio", this, InboxDedupFilter::dbCheckRatio)
+        .description("Доля событий, для которых понадобилась проверка в БД")
+        .register(meterRegistry);
+  }
+}
@@ -6,10 +6,12 @@ import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import java.time.Instant;
+import java.util.UUID;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+// таблица секционирована по occurred_at, первичный ключ в БД - (event_id, occurred_at)
 @Entity
 @Table(name = "inbox_events")
 @Getter
@@ -19,7 +21,7 @@ public class InboxEvent {
 
   @Id
   @Column(name = "event_id", nullable = false)
-  private String eventId;
+  private UUID eventId;
 
   @Column(name = "aggregate_id", nullable = false)
   private Long aggregateId;
@@ -27,6 +29,17 @@ public class InboxEvent {
   @Column(name = "event_type", nullable = false)
   private String eventType;
 
+  // время создания события у отправителя
+  @Column(name = "occurred_at", nullable = false)
+  private Instant occurredAt;
+
+  // позиция события в топике kafka
+  @Column(name = "source_partition")
+  private Integer sourcePartition;
+
+  @Column(name = "source_offset")
+  private Long sourceOffset;
+
   @Column(name = "processed_at", nullable = false)
   private Instant processedAt;
 
@@ -37,9 +50,13 @@ public class InboxEvent {
     }
   }
 
-  public InboxEvent(String eventId, Long aggregateId, String eventType) {
+  public InboxEvent(UUID eventId, Long aggregateId, String eventType, Instant occurredAt,
+      Integer sourcePartition, Long sourceOffset) {
     this.eventId = eventId;
     this.aggregateId = aggregateId;
     this.eventType = eventType;
+    this.occurredAt = occurredAt;
+    this.sourcePartition = sourcePartition;
+    this.sourceOffset = sourceOffset;
   }
 }
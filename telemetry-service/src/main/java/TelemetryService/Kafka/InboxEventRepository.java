@@ -1,7 +1,9 @@
 package TelemetryService.Kafka;
 
+import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface InboxEventRepository extends JpaRepository<InboxEvent, String> {
+public interface InboxEventRepository extends JpaRepository<InboxEvent, UUID>,
+    InboxEventRepositoryCustom {
 
 }
@@ -0,0 +1,38 @@
+package TelemetryService.Kafka;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface InboxEventRepositoryCustom {
+
+  /**
+   * Одним запросом записывает пачку событий в inbox_events, пропуская уже обработанные
+   * ({@code INSERT ... ON CONFLICT DO NOTHING RETURNING}).
+   *
+   * @param events события пачки (без повторов event_id)
+   * @return event_id событий, которые записаны впервые - только их нужно применять
+   */
+  List<String> insertNew(Collection<InboxEvent> events);
+
+  /**
+   * Находит сохраненное время создания событий по event_id во всех секциях. Нужен для событий без
+   * occurred_at: ключ такого события должен совпасть с уже записанной строкой.
+   *
+   * @param eventIds event_id событий
+   * @return occurred_at записанных событий по event_id
+   */
+  Map<UUID, Instant> findOccurredAt(Collection<UUID> eventIds);
+
+  /**
+   * Передает event_id последних обработанных событий (от новых к старым), не загружая их в память
+   * списком.
+   *
+   * @param limit  сколько event_id прочитать
+   * @param action обработчик каждого event_id
+   */
+  void forEachRecentEventId(int limit, Consumer<String> action);
+}
@@ -0,0 +1,105 @@
+package TelemetryService.Kafka;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+// реализация InboxEventRepositoryCustom, подключается Spring Data к InboxEventRepository
+@RequiredArgsConstructor
+public class InboxEventRepositoryImpl implements InboxEventRepositoryCustom {
+
+  private static final String INSERT_NEW = """
+      INSERT INTO inbox_events (event_id, aggregate_id, event_type, occurred_at,
+                                source_partition, source_offset)
+      SELECT e.event_id, e.aggregate_id, e.event_type, to_timestamp(e.occurred_at_ms / 1000.0),
+             e.source_partition, e.source_offset
+      FROM unnest(?::uuid[], ?::bigint[], ?::text[], ?::bigint[], ?::int[], ?::bigint[])
+          AS e(event_id, aggregate_id, event_type, occurred_at_ms, source_partition, source_offset)
+      ON CONFLICT (event_id, occurred_at) DO NOTHING
+      RETURNING event_id
+      """;
+
+  // event_id - первая колонка ключа, поиск идет по индексу каждой секции
+  private static final String OCCURRED_AT = """
+      SELECT event_id, occurred_at FROM inbox_events WHERE event_id = ANY(?::uuid[])
+      """;
+
+  private static final String RECENT_EVENT_IDS = """
+      SELECT event_id FROM inbox_events ORDER BY occurred_at DESC LIMIT ?
+      """;
+
+  // по сколько строк драйвер читает результат при заполнении фильтра
+  private static final int FETCH_SIZE = 10_000;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public List<String> insertNew(Collection<InboxEvent> events) {
+    if (events.isEmpty()) {
+      return List.of();
+    }
+    // колонки передаются массивами - размер запроса не зависит от размера пачки
+    UUID[] eventIds = new UUID[events.size()];
+    Long[] aggregateIds = new Long[events.size()];
+    String[] eventTypes = new String[events.size()];
+    Long[] occurredAt = new Long[events.size()];
+    Integer[] sourcePartitions = new Integer[events.size()];
+    Long[] sourceOffsets = new Long[events.size()];
+    int i = 0;
+    for (InboxEvent event : events) {
+      eventIds[i] = event.getEventId();
+      aggregateIds[i] = event.getAggregateId();
+      eventTypes[i] = event.getEventType();
+      occurredAt[i] = event.getOccurredAt().toEpochMilli();
+      sourcePartitions[i] = event.getSourcePartition();
+      sourceOffsets[i] = event.getSourceOffset();
+      i++;
+    }
+    return jdbcTemplate.query(connection -> {
+      PreparedStatement statement = connection.prepareStatement(INSERT_NEW);
+      statement.setArray(1, connection.createArrayOf("uuid", eventIds));
+      statement.setArray(2, connection.createArrayOf("bigint", aggregateIds));
+      statement.setArray(3, connection.createArrayOf("text", eventTypes));
+      statement.setArray(4, connection.createArrayOf("bigint", occurredAt));
+      statement.setArray(5, connection.createArrayOf("int", sourcePartitions));
+      statement.setArray(6, connection.createArrayOf("bigint", sourceOffsets));
+      return statement;
+    }, (rs, rowNum) -> rs.getString(1));
+  }
+
+  @Override
+  public Map<UUID, Instant> findOccurredAt(Collection<UUID> eventIds) {
+    Map<UUID, Instant> occurredAt = new HashMap<>();
+    if (eventIds.isEmpty()) {
+      return occurredAt;
+    }
+    UUID[] ids = eventIds.toArray(UUID[]::new);
+    jdbcTemplate.query(connection -> {
+      PreparedStatement statement = connection.prepareStatement(OCCURRED_AT);
+      statement.setArray(1, connection.createArrayOf("uuid", ids));
+      return statement;
+    }, (RowCallbackHandler) rs -> occurredAt.put(rs.getObject(1, UUID.class),
+        rs.getTimestamp(2).toInstant()));
+    return occurredAt;
+  }
+
+  @Override
+  public void forEachRecentEventId(int limit, Consumer<String> action) {
+    // fetch size у postgres драйвера работает только внутри транзакции (без autocommit)
+    jdbcTemplate.query(connection -> {
+      connection.setAutoCommit(false);
+      PreparedStatement statement = connection.prepareStatement(RECENT_EVENT_IDS);
+      statement.setFetchSize(FETCH_SIZE);
+      statement.setInt(1, limit);
+      return statement;
+    }, (RowCallbackHandler) rs -> action.accept(rs.getString(1)));
+  }
+}
@@ -0,0 +1,123 @@
+package TelemetryService.Kafka;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Обслуживание секций inbox_events.
+ * <p>
+ * Таблица секционирована по occurred_at (секция на сутки UTC, имя {@code inbox_events_pYYYYMMDD}).
+ * Задача заранее создает секции на {@code telemetry.inbox.retention.partitions-ahead} суток вперед
+ * и удаляет целиком секции старше горизонта дедупликации
+ * {@code telemetry.inbox.retention.dedup-horizon-days}. Повторная доставка события старше
+ * горизонта уже не распознается как повтор.
+ * </p>
+ * <p>
+ * События вне созданных секций попадают в секцию по умолчанию. При создании секции строки ее
+ * суток переносятся из секции по умолчанию в новую секцию.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InboxPartitionMaintenance {
+
+  private static final String PARTITION_PREFIX = "inbox_events_p";
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  // сколько суток помнятся обработанные события
+  @Value("${telemetry.inbox.retention.dedup-horizon-days:7}")
+  private int dedupHorizonDays;
+
+  // на сколько суток вперед создаются секции
+  @Value("${telemetry.inbox.retention.partitions-ahead:3}")
+  private int partitionsAhead;
+
+  // обслуживание выполняет только одна реплика - та, что получила advisory lock
+  @Scheduled(fixedDelayString = "${telemetry.inbox.retention.interval-ms:3600000}")
+  @Transactional
+  public void maintainPartitions() {
+    Boolean locked = jdbcTemplate.queryForObject(
+        "SELECT pg_try_advisory_xact_lock(hashtext('inbox_events_maintenance'))", Boolean.class);
+    if (!Boolean.TRUE.equals(locked)) {
+      return;
+    }
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    createPartitions(today);
+    dropExpiredPartitions(today.minusDays(dedupHorizonDays));
+  }
+
+  private void createPartitions(LocalDate today) {
+    for (int i = 0; i <= partitionsAhead; i++) {
+      LocalDate day = today.plusDays(i);
+      String partition = partitionName(day);
+      Boolean exists = jdbcTemplate.queryForObject(
+          "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+      if (!Boolean.TRUE.equals(exists)) {
+        createPartition(partition, day);
+      }
+    }
+  }
+
+  // CREATE TABLE ... PARTITION OF завершился бы ошибкой, если в секции по умолчанию уже есть
+  // строки этих суток (события с опережающими часами, простой обслуживания). Поэтому секция
+  // создается отдельной таблицей, строки ее диапазона переносятся из секции по умолчанию,
+  // и только потом она подключается к inbox_events
+  private void createPartition(String partition, LocalDate day) {
+    String from = day + " 00:00:00+00";
+    String to = day.plusDays(1) + " 00:00:00+00";
+    // до подключения новые строки этих суток не должны попасть в секцию по умолчанию
+    jdbcTemplate.execute("LOCK TABLE inbox_events_default IN ACCESS EXCLUSIVE MODE");
+    jdbcTemplate.execute(String.format(
+        "CREATE TABLE %s (LIKE inbox_events INCLUDING DEFAULTS)", partition));
+    int moved = jdbcTemplate.update(String.format("""
+        WITH moved AS (
+            DELETE FROM inbox_events_default
+            WHERE occurred_at >= '%s' AND occurred_at < '%s'
+            RETURNING *)
+        INSERT INTO %s SELECT * FROM moved
+        """, from, to, partition));
+    jdbcTemplate.execute(String.format(
+        "ALTER TABLE inbox_events ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')",
+        partition, from, to));
+    log.info("Inbox: создана секция {}, перенесено из секции по умолчанию: {}", partition, moved);
+  }
+
+  private void dropExpiredPartitions(LocalDate cutoff) {
+    List<String> partitions = jdbcTemplate.queryForList("""
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'inbox_events'::regclass
+        """, String.class);
+    for (String partition : partitions) {
+      if (!partition.startsWith(PARTITION_PREFIX)) {
+        continue;
+      }
+      LocalDate day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()),
+          PARTITION_SUFFIX);
+      if (day.isBefore(cutoff)) {
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        log.info("Inbox: удалена секция {}", partition);
+      }
+    }
+    // в секцию по умолчанию попадают события старше удаленных секций (например, при чтении
+    // топика с начала), их мало; горизонт считается по ключу секционирования, как у секций
+    jdbcTemplate.update(String.format(
+        "DELETE FROM inbox_events_default WHERE occurred_at < '%s 00:00:00+00'", cutoff));
+  }
+
+  private String partitionName(LocalDate day) {
+    return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+  }
+}
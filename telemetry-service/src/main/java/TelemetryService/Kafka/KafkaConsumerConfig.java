@@ -2,6 +2,8 @@ package TelemetryService.Kafka;
 
 import java.util.HashMap;
 import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -12,13 +14,14 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 
 // настройка стороны слушателя сообщений от kafka
 @Configuration
 @EnableKafka // подключение поддержки @Kafkalistener
+@Slf4j
 public class KafkaConsumerConfig {
 
-
   // адрес для kafka
   @Value("${spring.kafka.bootstrap-servers:kafka:9092}")
   private String bootstrapServers;
@@ -27,6 +30,22 @@ public class KafkaConsumerConfig {
   @Value("${KAFKA_GROUP_ID:telemetry-service-group}")
   private String groupId;
 
+  // топик событий спутников - по числу его партиций выбирается число потоков слушателя
+  @Value("${KAFKA_TOPIC_SATELLITE_EVENTS:satellite-events}")
+  private String topic;
+
+  // сколько записей отдается слушателю за один poll (размер пачки)
+  @Value("${telemetry.kafka.max-poll-records:500}")
+  private int maxPollRecords;
+
+  // число потоков слушателя, если число партиций топика узнать не удалось
+  @Value("${telemetry.kafka.concurrency:1}")
+  private int defaultConcurrency;
+
+  // верхняя граница числа потоков слушателя
+  @Value("${telemetry.kafka.max-concurrency:8}")
+  private int maxConcurrency;
+
   @Bean
   public ConsumerFactory<String, byte[]> consumerFactory() {
     Map<String, Object> props = new HashMap<>();
@@ -40,6 +59,13 @@ public class KafkaConsumerConfig {
     // если сервис запустился впервые - читать с самого начала
     props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
+    // читать только зафиксированные сообщения транзакционного producer'а outbox
+    // (сообщения из отмененных kafka транзакций пропускаются)
+    props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+    // слушатель получает пачку записей за один poll
+    props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+
     // как делать десериализацию
     props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
     props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
@@ -57,9 +83,29 @@ public class KafkaConsumerConfig {
   }
 
   @Bean
-  public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory() {
+  public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory(
+      KafkaAdmin kafkaAdmin) {
     var factory = new ConcurrentKafkaListenerContainerFactory<String, byte[]>();
     factory.setConsumerFactory(consumerFactory());
+    // слушатель принимает List<ConsumerRecord> - вся пачка poll'а обрабатывается одной транзакцией
+    factory.setBatchListener(true);
+    // по одному потоку на партицию: больше потоков простаивали бы без назначенных партиций
+    factory.setConcurrency(resolveConcurrency(kafkaAdmin));
     return factory;
   }
+
+  // число партиций топика, ограниченное maxConcurrency
+  private int resolveConcurrency(KafkaAdmin kafkaAdmin) {
+    try {
+      Map<String, TopicDescription> topics = kafkaAdmin.describeTopics(topic);
+      int partitions = topics.get(topic).partitions().size();
+      int concurrency = Math.max(1, Math.min(partitions, maxConcurrency));
+      log.info("Топик {}: {} партиций, потоков слушателя: {}", topic, partitions, concurrency);
+      return concurrency;
+    } catch (Exception e) {
+      log.warn("Не удалось получить число партиций топика {}, потоков слушателя: {}",
+          topic, defaultConcurrency, e);
+      return defaultConcurrency;
+    }
+  }
 }
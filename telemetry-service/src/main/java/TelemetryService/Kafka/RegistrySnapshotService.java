@@ -0,0 +1,88 @@
+package TelemetryService.Kafka;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодические снимки {@link SatelliteRegistry} в telemetry_db.
+ * <p>
+ * Снимок хранит id активных спутников и последний примененный offset по каждой партиции топика
+ * событий. При старте, до запуска слушателя kafka, реестр заполняется из снимка и догоняется
+ * событиями из inbox_events, примененными после него. Слушатель продолжает с зафиксированного
+ * offset'а, а уже записанные в inbox события отбрасывает как повторы, поэтому перечитывать
+ * топик с начала не нужно.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrySnapshotService {
+
+  private final SatelliteRegistry satelliteRegistry;
+  private final RegistrySnapshotStore snapshotStore;
+
+  // номер изменения реестра в последнем сохраненном снимке
+  private long savedVersion = -1;
+
+  // слушатели kafka стартуют после инициализации бинов - реестр уже восстановлен
+  @PostConstruct
+  public void restore() {
+    long started = System.currentTimeMillis();
+    long[] ids = new long[0];
+    Map<Integer, Long> offsets = new HashMap<>();
+    var stored = snapshotStore.load();
+    if (stored.isPresent()) {
+      ids = stored.get().satelliteIds();
+      offsets.putAll(stored.get().offsets());
+    }
+    satelliteRegistry.restore(ids, offsets);
+
+    // хвост применяется одной пачкой: порядок событий каждого спутника сохранен запросом
+    SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+    Map<Integer, Long> tailOffsets = new HashMap<>();
+    int[] replayed = {0};
+    snapshotStore.forEachTailEvent((satelliteId, eventType, partition, offset) -> {
+      switch (eventType) {
+        case "SATELLITE_ADDED" -> changes.add(satelliteId);
+        case "SATELLITE_REMOVED" -> changes.remove(satelliteId);
+        default -> log.warn("Неизвестный тип события в inbox: {}", eventType);
+      }
+      tailOffsets.merge(partition, offset, Math::max);
+      replayed[0]++;
+    });
+    satelliteRegistry.applyBatch(changes, tailOffsets);
+    log.info("Реестр спутников восстановлен за {} мс: снимок {}, событий после снимка {}, "
+            + "спутников {}", System.currentTimeMillis() - started,
+        stored.map(s -> s.takenAt().toString()).orElse("отсутствует"), replayed[0],
+        satelliteRegistry.size());
+  }
+
+  @Scheduled(
+      initialDelayString = "${telemetry.registry.snapshot.interval-ms:30000}",
+      fixedDelayString = "${telemetry.registry.snapshot.interval-ms:30000}")
+  public synchronized void saveSnapshot() {
+    SatelliteRegistry.Snapshot snapshot = satelliteRegistry.snapshot();
+    if (snapshot.version() == savedVersion) {
+      return;
+    }
+    snapshotStore.save(snapshot);
+    savedVersion = snapshot.version();
+    log.debug("Сохранен снимок реестра: {} спутников", snapshot.satelliteIds().length);
+  }
+
+  // слушатели kafka к этому моменту остановлены - снимок соответствует последней пачке
+  @PreDestroy
+  public void saveOnShutdown() {
+    try {
+      saveSnapshot();
+    } catch (Exception e) {
+      log.warn("Не удалось сохранить снимок реестра при остановке", e);
+    }
+  }
+}
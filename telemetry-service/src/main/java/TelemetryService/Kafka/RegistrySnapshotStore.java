@@ -0,0 +1,97 @@
+package TelemetryService.Kafka;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// хранение снимка SatelliteRegistry в telemetry_db (таблицы registry_snapshot*)
+@Component
+@RequiredArgsConstructor
+public class RegistrySnapshotStore {
+
+  // события, примененные после снимка, в порядке их позиции в топике
+  // порядок внутри партиции совпадает с порядком событий одного спутника
+  private static final String TAIL = """
+      SELECT i.aggregate_id, i.event_type, i.source_partition, i.source_offset
+      FROM inbox_events i
+      LEFT JOIN registry_snapshot_offsets o ON o.source_partition = i.source_partition
+      WHERE i.source_partition IS NOT NULL
+        AND (o.last_offset IS NULL OR i.source_offset > o.last_offset)
+      ORDER BY i.source_partition, i.source_offset
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  // обработчик события из хвоста inbox_events
+  public interface TailEventHandler {
+
+    void handle(long satelliteId, String eventType, int partition, long offset);
+  }
+
+  // сохраненный снимок: id спутников и offset'ы, до которых они применены
+  public record StoredSnapshot(long[] satelliteIds, Map<Integer, Long> offsets, Instant takenAt) {
+
+  }
+
+  @Transactional
+  public void save(SatelliteRegistry.Snapshot snapshot) {
+    jdbcTemplate.update("""
+            INSERT INTO registry_snapshot (id, satellite_ids, satellite_count, taken_at)
+            VALUES (1, ?, ?, now())
+            ON CONFLICT (id) DO UPDATE SET satellite_ids = excluded.satellite_ids,
+                satellite_count = excluded.satellite_count, taken_at = excluded.taken_at
+            """,
+        pack(snapshot.satelliteIds()), snapshot.satelliteIds().length);
+    List<Object[]> offsets = snapshot.offsets().entrySet().stream()
+        .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+        .toList();
+    jdbcTemplate.batchUpdate("""
+        INSERT INTO registry_snapshot_offsets (source_partition, last_offset) VALUES (?, ?)
+        ON CONFLICT (source_partition) DO UPDATE SET last_offset = excluded.last_offset
+        """, offsets);
+  }
+
+  @Transactional(readOnly = true)
+  public Optional<StoredSnapshot> load() {
+    List<StoredSnapshot> rows = jdbcTemplate.query(
+        "SELECT satellite_ids, taken_at FROM registry_snapshot WHERE id = 1",
+        (rs, rowNum) -> new StoredSnapshot(unpack(rs.getBytes(1)), new HashMap<>(),
+            rs.getObject(2, Timestamp.class).toInstant()));
+    if (rows.isEmpty()) {
+      return Optional.empty();
+    }
+    StoredSnapshot snapshot = rows.get(0);
+    jdbcTemplate.query("SELECT source_partition, last_offset FROM registry_snapshot_offsets",
+        (RowCallbackHandler) rs -> snapshot.offsets().put(rs.getInt(1), rs.getLong(2)));
+    return Optional.of(snapshot);
+  }
+
+  // передает события, примененные после сохраненного снимка (все, если снимка нет)
+  @Transactional(readOnly = true)
+  public void forEachTailEvent(TailEventHandler handler) {
+    jdbcTemplate.query(TAIL, (RowCallbackHandler) rs -> handler.handle(
+        rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getLong(4)));
+  }
+
+  // id спутников упаковываются подряд по 8 байт
+  private static byte[] pack(long[] ids) {
+    ByteBuffer buffer = ByteBuffer.allocate(ids.length * Long.BYTES);
+    buffer.asLongBuffer().put(ids);
+    return buffer.array();
+  }
+
+  private static long[] unpack(byte[] bytes) {
+    long[] ids = new long[bytes.length / Long.BYTES];
+    ByteBuffer.wrap(bytes).asLongBuffer().get(ids);
+    return ids;
+  }
+}
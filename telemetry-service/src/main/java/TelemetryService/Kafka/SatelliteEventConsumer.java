@@ -2,8 +2,18 @@ package TelemetryService.Kafka;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import constellation.events.proto.SatelliteEvent;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,44 +25,123 @@ public class SatelliteEventConsumer {
 
   private final SatelliteRegistry satelliteRegistry;
   private final InboxEventRepository inboxRepository;
+  // фильтр в памяти: отсекает недавние повторы без обращения к БД
+  private final InboxDedupFilter dedupFilter;
 
+  // принимает сразу всю пачку, полученную за один poll (см. KafkaConsumerConfig)
+  // дедупликация всей пачки - один запрос к inbox_events, одна транзакция на пачку
+  // при ошибке БД транзакция откатывается, и пачка будет получена повторно
   @KafkaListener(
       topics = "${KAFKA_TOPIC_SATELLITE_EVENTS:satellite-events}",
-      groupId = "${KAFKA_GROUP_ID:telemetry-service-group}",
-      concurrency = "1"
+      groupId = "${KAFKA_GROUP_ID:telemetry-service-group}"
   )
   @Transactional
-  public void handleSatelliteEvent(byte[] payload) {
-    try {
-      SatelliteEvent event = SatelliteEvent.parseFrom(payload);
-      String eventId = event.getEventId();
-
-      if (inboxRepository.existsById(eventId)) {
-        log.info("Событие {} уже обработано, пропускается", eventId);
-        return;
+  public void handleSatelliteEvents(List<ConsumerRecord<String, byte[]>> records) {
+    // события пачки в порядке получения, повторы внутри пачки отбрасываются
+    Map<String, ReceivedEvent> events = new LinkedHashMap<>();
+    // последний offset пачки по партициям - позиция, до которой применен реестр
+    Map<Integer, Long> lastOffsets = new HashMap<>();
+    for (ConsumerRecord<String, byte[]> record : records) {
+      lastOffsets.merge(record.partition(), record.offset(), Math::max);
+      try {
+        SatelliteEvent event = SatelliteEvent.parseFrom(record.value());
+        UUID eventId = UUID.fromString(event.getEventId());
+        // у событий от старых версий отправителя нет occurred_at - до проверки в inbox_events
+        // берется время записи в kafka (см. resolveLegacyOccurredAt)
+        boolean legacy = event.getOccurredAt() == 0;
+        Instant occurredAt = Instant.ofEpochMilli(
+            legacy ? record.timestamp() : event.getOccurredAt());
+        events.putIfAbsent(eventId.toString(), new ReceivedEvent(
+            eventId, occurredAt, legacy, record.partition(), record.offset(), event));
+      } catch (InvalidProtocolBufferException e) {
+        log.error("Ошибка парсинга protobuf (партиция {}, offset {})",
+            record.partition(), record.offset(), e);
+      } catch (IllegalArgumentException e) {
+        log.error("Некорректный event_id (партиция {}, offset {})",
+            record.partition(), record.offset(), e);
       }
+    }
+    if (events.isEmpty()) {
+      satelliteRegistry.markAppliedAfterCommit(lastOffsets);
+      return;
+    }
+
+    // недавние повторы отбрасываются сразу, остальные проверяются записью в inbox_events
+    List<ReceivedEvent> candidates = new ArrayList<>(events.size());
+    for (Map.Entry<String, ReceivedEvent> entry : events.entrySet()) {
+      if (dedupFilter.isRecent(entry.getKey())) {
+        log.debug("Событие {} уже обработано, пропускается", entry.getKey());
+      } else {
+        candidates.add(entry.getValue());
+      }
+    }
+    if (candidates.isEmpty()) {
+      satelliteRegistry.markAppliedAfterCommit(lastOffsets);
+      return;
+    }
+
+    Map<UUID, Instant> storedOccurredAt = resolveLegacyOccurredAt(candidates);
+    List<InboxEvent> inboxEvents = new ArrayList<>(candidates.size());
+    for (ReceivedEvent received : candidates) {
+      Instant occurredAt = storedOccurredAt.getOrDefault(received.eventId(),
+          received.occurredAt());
+      inboxEvents.add(new InboxEvent(received.eventId(), received.event().getSatelliteId(),
+          received.event().getType().name(), occurredAt, received.partition(),
+          received.offset()));
+    }
+    Set<String> newEventIds = new HashSet<>(inboxRepository.insertNew(inboxEvents));
+
+    // изменения пачки публикуются в реестре одним новым состоянием
+    SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+    for (ReceivedEvent received : candidates) {
+      String eventId = received.eventId().toString();
+      if (!newEventIds.contains(eventId)) {
+        log.debug("Событие {} уже обработано, пропускается", eventId);
+        continue;
+      }
+      apply(received.event(), changes);
+    }
+    // реестр и фильтр обновляются только после коммита inbox_events
+    satelliteRegistry.applyBatchAfterCommit(changes, lastOffsets);
+    // все кандидаты теперь есть в inbox_events (новые или уже были)
+    dedupFilter.recordAfterCommit(events.keySet());
+    log.info("Обработана пачка событий: получено {}, новых {}", records.size(),
+        newEventIds.size());
+  }
+
+  // событие без occurred_at могло быть записано с другим временем: при переносе в секции (V2)
+  // старые строки получили processed_at, а повторная отправка дает новое время записи в kafka.
+  // Если событие уже есть в inbox_events, берется его сохраненный occurred_at - тогда ключ
+  // совпадает, и повтор отсекается по конфликту. Таких событий мало, обычные события не ищутся
+  private Map<UUID, Instant> resolveLegacyOccurredAt(List<ReceivedEvent> candidates) {
+    List<UUID> legacyIds = new ArrayList<>();
+    for (ReceivedEvent received : candidates) {
+      if (received.legacy()) {
+        legacyIds.add(received.eventId());
+      }
+    }
+    return legacyIds.isEmpty() ? Map.of() : inboxRepository.findOccurredAt(legacyIds);
+  }
 
-      log.info("Получено событие: тип={} id спутника={}", event.getType(), event.getSatelliteId());
-
-      InboxEvent inboxEvent = new InboxEvent(
-          eventId, event.getSatelliteId(), event.getType().name());
-      inboxRepository.save(inboxEvent);
-
-      switch (event.getType()) {
-        case SATELLITE_ADDED -> {
-          satelliteRegistry.addSatellite(event.getSatelliteId());
-          log.info("Добавлен спутник (id={}) в поток телеметрии", event.getSatelliteId());
-        }
-        case SATELLITE_REMOVED -> {
-          satelliteRegistry.removeSatellite(event.getSatelliteId());
-          log.info("Удален спутник (id={}) из потока телеметрии", event.getSatelliteId());
-        }
-        case UNRECOGNIZED -> log.warn("Получен неизвестный тип события");
+  // добавляет событие к изменениям реестра
+  private void apply(SatelliteEvent event, SatelliteRegistry.Changes changes) {
+    switch (event.getType()) {
+      case SATELLITE_ADDED -> {
+        changes.add(event.getSatelliteId());
+        log.debug("Добавлен спутник (id={}) в поток телеметрии", event.getSatelliteId());
+      }
+      case SATELLITE_REMOVED -> {
+        changes.remove(event.getSatelliteId());
+        log.debug("Удален спутник (id={}) из потока телеметрии", event.getSatelliteId());
       }
-    } catch (InvalidProtocolBufferException e) {
-      log.error("Ошибка парсинга protobuf", e);
-    } catch (Exception e) {
-      log.error("Ошибка обработки события", e);
+      case UNRECOGNIZED -> log.warn("Получен неизвестный тип события");
     }
   }
+
+  // разобранное событие с нормализованным event_id и временем создания
+  // legacy - occurred_at не пришел в событии
+  private record ReceivedEvent(UUID eventId, Instant occurredAt, boolean legacy, int partition,
+      long offset, SatelliteEvent event) {
+
+  }
 }
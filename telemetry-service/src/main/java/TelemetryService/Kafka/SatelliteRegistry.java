@@ -1,37 +1,182 @@
 package TelemetryService.Kafka;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+/**
+ * Реестр активных спутников.
+ * <p>
+ * Состояние неизменяемо и публикуется целиком через volatile ссылку (copy-on-write):
+ * отсортированный массив id с номером эпохи и offset'ы топика событий, до которых оно применено.
+ * Читатели (такт телеметрии, снимки) берут текущее состояние без блокировок и без создания
+ * объектов. Писатели (слушатель kafka) собирают изменения пачки в {@link Changes} и публикуют
+ * новое состояние один раз на пачку. Эпоха меняется только при изменении состава спутников.
+ * </p>
+ */
 @Component
 public class SatelliteRegistry {
 
-  // потокобезопасный Set для хранения ID активных спутников
-  private final Set<Long> activeSatelliteIds = ConcurrentHashMap.newKeySet();
+  private static final long[] NO_IDS = new long[0];
 
-  // добавить
-  public void addSatellite(Long satelliteId) {
-    activeSatelliteIds.add(satelliteId);
+  // текущее состояние; заменяется только под this
+  private volatile State state = new State(0, new ActiveIds(0, NO_IDS), Map.of());
+
+  // id активных спутников по возрастанию; массив не меняется после публикации
+  public record ActiveIds(long epoch, long[] ids) {
+
+    public boolean contains(long satelliteId) {
+      return Arrays.binarySearch(ids, satelliteId) >= 0;
+    }
+
+    public int size() {
+      return ids.length;
+    }
   }
 
-  //удалить
-  public void removeSatellite(Long satelliteId) {
-    activeSatelliteIds.remove(satelliteId);
+  // снимок реестра; version - номер изменения, на котором он взят
+  public record Snapshot(long version, long[] satelliteIds, Map<Integer, Long> offsets) {
+
   }
 
-  // получить список текущих id
-  public Set<Long> getActiveIds() {
-    return Set.copyOf(activeSatelliteIds);
+  // изменения пачки событий: для каждого спутника важно только последнее событие пачки
+  public static final class Changes {
+
+    // id -> true (добавлен) / false (удален)
+    private final Map<Long, Boolean> present = new HashMap<>();
+
+    public void add(long satelliteId) {
+      present.put(satelliteId, Boolean.TRUE);
+    }
+
+    public void remove(long satelliteId) {
+      present.put(satelliteId, Boolean.FALSE);
+    }
+
+    boolean isEmpty() {
+      return present.isEmpty();
+    }
+  }
+
+  // текущий состав реестра (без копирования)
+  public ActiveIds activeIds() {
+    return state.activeIds();
+  }
+
+  // применяет изменения пачки событий и запоминает последние offset'ы пачки по партициям
+  public synchronized void applyBatch(Changes changes, Map<Integer, Long> lastOffsets) {
+    State current = state;
+    ActiveIds activeIds = changes.isEmpty()
+        ? current.activeIds()
+        : merge(current.activeIds(), changes);
+    Map<Integer, Long> offsets = current.offsets();
+    if (!lastOffsets.isEmpty()) {
+      Map<Integer, Long> merged = new HashMap<>(offsets);
+      lastOffsets.forEach((partition, offset) -> merged.merge(partition, offset, Math::max));
+      offsets = Map.copyOf(merged);
+    }
+    state = new State(current.version() + 1, activeIds, offsets);
+  }
+
+  // пачка без новых событий - сдвигаются только offset'ы
+  public void markApplied(Map<Integer, Long> lastOffsets) {
+    applyBatch(new Changes(), lastOffsets);
+  }
+
+  // применяет изменения пачки после коммита текущей транзакции
+  // (при откате пачка будет получена повторно - реестр и его offset'ы не должны ее опережать)
+  public void applyBatchAfterCommit(Changes changes, Map<Integer, Long> lastOffsets) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      applyBatch(changes, lastOffsets);
+      return;
+    }
+    Map<Integer, Long> offsets = Map.copyOf(lastOffsets);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        applyBatch(changes, offsets);
+      }
+    });
+  }
+
+  // пачка без новых событий - offset'ы сдвигаются после коммита текущей транзакции
+  public void markAppliedAfterCommit(Map<Integer, Long> lastOffsets) {
+    applyBatchAfterCommit(new Changes(), lastOffsets);
+  }
+
+  // согласованный срез: id спутников (по возрастанию) и offset'ы, до которых они применены
+  public Snapshot snapshot() {
+    State current = state;
+    return new Snapshot(current.version(), current.activeIds().ids(), current.offsets());
+  }
+
+  // заполняет реестр из сохраненного снимка (при старте, до запуска слушателя kafka)
+  public synchronized void restore(long[] satelliteIds, Map<Integer, Long> offsets) {
+    long[] ids = satelliteIds.clone();
+    Arrays.sort(ids);
+    State current = state;
+    state = new State(current.version() + 1,
+        new ActiveIds(current.activeIds().epoch() + 1, ids), Map.copyOf(offsets));
   }
 
   // проверка есть ли в списке
-  public boolean contains(Long satelliteId) {
-    return activeSatelliteIds.contains(satelliteId);
+  public boolean contains(long satelliteId) {
+    return state.activeIds().contains(satelliteId);
   }
 
   // количество элементов
   public int size() {
-    return activeSatelliteIds.size();
+    return state.activeIds().size();
+  }
+
+  // новый отсортированный массив: текущие id без удаленных плюс добавленные
+  // (слияние отсортированных массивов, без упаковки id)
+  private static ActiveIds merge(ActiveIds current, Changes changes) {
+    long[] added = idsWithState(changes, true);
+    long[] removed = idsWithState(changes, false);
+    long[] ids = current.ids();
+    long[] next = new long[ids.length + added.length];
+    int size = 0;
+    int a = 0;
+    int r = 0;
+    for (long id : ids) {
+      while (a < added.length && added[a] < id) {
+        next[size++] = added[a++];
+      }
+      if (a < added.length && added[a] == id) {
+        a++;
+      }
+      while (r < removed.length && removed[r] < id) {
+        r++;
+      }
+      if (r < removed.length && removed[r] == id) {
+        continue;
+      }
+      next[size++] = id;
+    }
+    while (a < added.length) {
+      next[size++] = added[a++];
+    }
+    long[] merged = size == next.length ? next : Arrays.copyOf(next, size);
+    if (Arrays.equals(merged, ids)) {
+      return current;
+    }
+    return new ActiveIds(current.epoch() + 1, merged);
+  }
+
+  private static long[] idsWithState(Changes changes, boolean present) {
+    return changes.present.entrySet().stream()
+        .filter(entry -> entry.getValue() == present)
+        .mapToLong(Map.Entry::getKey)
+        .sorted()
+        .toArray();
+  }
+
+  // version растет при каждой публикации (в том числе при сдвиге offset'ов)
+  private record State(long version, ActiveIds activeIds, Map<Integer, Long> offsets) {
+
   }
 }
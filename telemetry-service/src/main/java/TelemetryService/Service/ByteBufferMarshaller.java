@@ -0,0 +1,61 @@
+package TelemetryService.Service;
+
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+// маршаллер для сериализованных protobuf сообщений в ByteBuffer (записи журнала телеметрии):
+// gRPC читает байты прямо из буфера, сообщение не копируется в промежуточный массив
+final class ByteBufferMarshaller implements MethodDescriptor.Marshaller<ByteBuffer> {
+
+  static final ByteBufferMarshaller INSTANCE = new ByteBufferMarshaller();
+
+  private ByteBufferMarshaller() {
+  }
+
+  @Override
+  public InputStream stream(ByteBuffer value) {
+    return new ByteBufferInputStream(value.duplicate());
+  }
+
+  @Override
+  public ByteBuffer parse(InputStream stream) {
+    try {
+      return ByteBuffer.wrap(stream.readAllBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream implements KnownLength {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(target, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
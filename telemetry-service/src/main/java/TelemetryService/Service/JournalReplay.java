@@ -0,0 +1,80 @@
+package TelemetryService.Service;
+
+import TelemetryService.Service.TelemetryJournal.JournalCursor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import constellationsim.telemetry.proto.TelemetryBatch;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+// повтор журнала одному клиенту с учетом flow control: записи отдаются, пока клиент готов, и
+// дальше из setOnReadyHandler; на конце журнала поток завершается
+// без фильтра записи уходят срезами сегментов как есть, с фильтром - пачка собирается заново
+@Slf4j
+final class JournalReplay {
+
+  private final JournalCursor cursor;
+  // спутники по возрастанию, null - все
+  private final long[] satelliteIds;
+  private final ServerCallStreamObserver<ByteBuffer> observer;
+  private boolean finished;
+
+  JournalReplay(JournalCursor cursor, long[] satelliteIds,
+      ServerCallStreamObserver<ByteBuffer> observer) {
+    this.cursor = cursor;
+    this.satelliteIds = satelliteIds;
+    this.observer = observer;
+  }
+
+  synchronized void pump() {
+    if (finished) {
+      return;
+    }
+    try {
+      while (observer.isReady() && !observer.isCancelled()) {
+        ByteBuffer body = cursor.next();
+        if (body == null) {
+          finished = true;
+          observer.onCompleted();
+          return;
+        }
+        ByteBuffer message = satelliteIds == null ? body : filter(body);
+        if (message != null) {
+          observer.onNext(message);
+        }
+      }
+    } catch (Exception e) {
+      finished = true;
+      log.warn("Ошибка повтора журнала телеметрии", e);
+      try {
+        observer.onError(Status.INTERNAL.withDescription("Ошибка чтения журнала")
+            .asRuntimeException());
+      } catch (Exception ignored) {
+        // вызов уже закрыт
+      }
+    }
+  }
+
+  synchronized void cancel() {
+    finished = true;
+  }
+
+  // пачка только с запрошенными спутниками или null, если их нет в записи
+  private ByteBuffer filter(ByteBuffer body) throws InvalidProtocolBufferException {
+    TelemetryBatch batch = TelemetryBatch.parseFrom(body);
+    TelemetryBatch.Builder filtered = TelemetryBatch.newBuilder().setTick(batch.getTick());
+    for (int i = 0; i < batch.getSatelliteIdsCount(); i++) {
+      if (Arrays.binarySearch(satelliteIds, batch.getSatelliteIds(i)) >= 0) {
+        filtered.addSatelliteIds(batch.getSatelliteIds(i))
+            .addOutsideTemperatures(batch.getOutsideTemperatures(i))
+            .addInsideTemperatures(batch.getInsideTemperatures(i));
+      }
+    }
+    if (filtered.getSatelliteIdsCount() == 0) {
+      return null;
+    }
+    return ByteBuffer.wrap(filtered.build().toByteArray());
+  }
+}
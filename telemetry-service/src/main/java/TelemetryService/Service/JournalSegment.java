@@ -0,0 +1,199 @@
+package TelemetryService.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// сегмент журнала телеметрии - файл, отображенный в память целиком
+// запись: [int длина тела][int crc32c тела][long время, unix ms][тело - TelemetryBatch]
+// длина 0 - конец записанной части (файл создается заполненным нулями)
+// пишет только поток такта; читатели видят записи до end (volatile), поэтому читают без
+// блокировок; разреженный индекс времени - каждая indexInterval-я запись
+final class JournalSegment {
+
+  static final int HEADER_BYTES = 16;
+
+  private final long sequence;
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private final int indexInterval;
+
+  // конец записанной части
+  private volatile int end;
+  private volatile long firstTimeMs = -1;
+  private volatile long lastTimeMs = -1;
+  private int recordCount;
+  // позиция последней записи, -1 - записей нет
+  private int lastPosition = -1;
+
+  // разреженный индекс: время и позиция записи
+  private long[] indexTimes = new long[16];
+  private int[] indexPositions = new int[16];
+  private int indexCount;
+
+  private JournalSegment(long sequence, Path path, MappedByteBuffer buffer, int indexInterval) {
+    this.sequence = sequence;
+    this.path = path;
+    this.buffer = buffer;
+    this.indexInterval = indexInterval;
+  }
+
+  // новый сегмент размера size
+  static JournalSegment create(Path path, long sequence, int size, int indexInterval)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // отображение остается действительным после закрытия канала
+      return new JournalSegment(sequence, path,
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, size), indexInterval);
+    }
+  }
+
+  // существующий сегмент: записи читаются до первой неполной или испорченной (обрыв записи при
+  // падении процесса), дальше запись продолжается с этого места
+  static JournalSegment open(Path path, long sequence, int indexInterval) throws IOException {
+    JournalSegment segment;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      segment = new JournalSegment(sequence, path,
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()), indexInterval);
+    }
+    segment.recover();
+    return segment;
+  }
+
+  long sequence() {
+    return sequence;
+  }
+
+  int end() {
+    return end;
+  }
+
+  long firstTimeMs() {
+    return firstTimeMs;
+  }
+
+  long lastTimeMs() {
+    return lastTimeMs;
+  }
+
+  // дописывает запись; false - в сегменте нет места
+  boolean append(long timeMs, byte[] body) {
+    int position = end;
+    if ((long) position + HEADER_BYTES + body.length > buffer.capacity()) {
+      return false;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(body);
+    buffer.putInt(position + 4, (int) crc.getValue());
+    buffer.putLong(position + 8, timeMs);
+    buffer.put(position + HEADER_BYTES, body);
+    buffer.putInt(position, body.length);
+    addRecord(position, timeMs);
+    // публикация записи читателям
+    end = position + HEADER_BYTES + body.length;
+    return true;
+  }
+
+  // позиция первой записи со временем >= timeMs или end
+  int positionAtOrAfter(long timeMs) {
+    int position = indexFloor(timeMs);
+    int limit = end;
+    while (position < limit && buffer.getLong(position + 8) < timeMs) {
+      position += HEADER_BYTES + buffer.getInt(position);
+    }
+    return Math.min(position, limit);
+  }
+
+  // тело записи в позиции position без копирования - срез отображенного буфера
+  ByteBuffer body(int position) {
+    return buffer.slice(position + HEADER_BYTES, buffer.getInt(position));
+  }
+
+  // тело последней записи или null, если записей нет
+  ByteBuffer lastBody() {
+    return lastPosition < 0 ? null : body(lastPosition);
+  }
+
+  // позиция записи после записи в position
+  int next(int position) {
+    return position + HEADER_BYTES + buffer.getInt(position);
+  }
+
+  void force() {
+    buffer.force(0, end);
+  }
+
+  void delete() throws IOException {
+    // отображение остается действительным для читателей, файл освобождается после их завершения
+    Files.deleteIfExists(path);
+  }
+
+  private void recover() {
+    int position = 0;
+    CRC32C crc = new CRC32C();
+    while (position + HEADER_BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || (long) position + HEADER_BYTES + length > buffer.capacity()) {
+        break;
+      }
+      crc.reset();
+      crc.update(buffer.slice(position + HEADER_BYTES, length));
+      if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+        break;
+      }
+      addRecord(position, buffer.getLong(position + 8));
+      position += HEADER_BYTES + length;
+    }
+    // хвост после обрыва затирается, чтобы новая запись не выглядела продолжением старой
+    if (position + 4 <= buffer.capacity()) {
+      buffer.putInt(position, 0);
+    }
+    end = position;
+  }
+
+  private void addRecord(int position, long timeMs) {
+    if (recordCount++ % indexInterval == 0) {
+      addIndex(position, timeMs);
+    }
+    if (firstTimeMs < 0) {
+      firstTimeMs = timeMs;
+    }
+    lastTimeMs = timeMs;
+    lastPosition = position;
+  }
+
+  private synchronized void addIndex(int position, long timeMs) {
+    if (indexCount == indexTimes.length) {
+      indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+      indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+    }
+    indexTimes[indexCount] = timeMs;
+    indexPositions[indexCount] = position;
+    indexCount++;
+  }
+
+  // позиция последней проиндексированной записи со временем < timeMs или 0
+  private synchronized int indexFloor(long timeMs) {
+    int low = 0;
+    int high = indexCount - 1;
+    int found = 0;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (indexTimes[middle] < timeMs) {
+        found = indexPositions[middle];
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return found;
+  }
+}
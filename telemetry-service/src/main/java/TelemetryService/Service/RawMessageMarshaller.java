@@ -0,0 +1,41 @@
+package TelemetryService.Service;
+
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+// маршаллер для уже сериализованных protobuf сообщений: байты передаются gRPC как есть,
+// поэтому одно сообщение сериализуется один раз для всех подписчиков
+final class RawMessageMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+  static final RawMessageMarshaller INSTANCE = new RawMessageMarshaller();
+
+  private RawMessageMarshaller() {
+  }
+
+  @Override
+  public InputStream stream(byte[] value) {
+    return new KnownLengthInputStream(value);
+  }
+
+  @Override
+  public byte[] parse(InputStream stream) {
+    try {
+      return stream.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // KnownLength - gRPC сразу знает размер кадра и не копирует поток в промежуточный буфер
+  private static final class KnownLengthInputStream extends ByteArrayInputStream
+      implements KnownLength {
+
+    private KnownLengthInputStream(byte[] buf) {
+      super(buf);
+    }
+  }
+}
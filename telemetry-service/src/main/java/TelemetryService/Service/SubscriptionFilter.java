@@ -0,0 +1,48 @@
+package TelemetryService.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.LongStream;
+
+// фильтр подписки: все спутники или набор id (по возрастанию, без повторов)
+public record SubscriptionFilter(boolean all, long[] satelliteIds) {
+
+  public static final SubscriptionFilter ALL = new SubscriptionFilter(true, new long[0]);
+  public static final SubscriptionFilter NONE = new SubscriptionFilter(false, new long[0]);
+
+  // фильтр из запроса: satelliteId == 0 и пустой список - все спутники
+  public static SubscriptionFilter of(long satelliteId, Collection<Long> satelliteIds) {
+    if (satelliteId == 0 && satelliteIds.isEmpty()) {
+      return ALL;
+    }
+    LongStream ids = satelliteIds.stream().mapToLong(Long::longValue);
+    if (satelliteId != 0) {
+      ids = LongStream.concat(LongStream.of(satelliteId), ids);
+    }
+    return new SubscriptionFilter(false, ids.sorted().distinct().toArray());
+  }
+
+  public static SubscriptionFilter ofIds(Collection<Long> satelliteIds) {
+    return new SubscriptionFilter(false,
+        satelliteIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray());
+  }
+
+  public SubscriptionFilter plus(Collection<Long> added) {
+    if (all) {
+      return this;
+    }
+    return new SubscriptionFilter(false, LongStream.concat(Arrays.stream(satelliteIds),
+        added.stream().mapToLong(Long::longValue)).sorted().distinct().toArray());
+  }
+
+  // убрать спутники из фильтра "все" нельзя - фильтр не меняется
+  public SubscriptionFilter minus(Collection<Long> removed) {
+    if (all) {
+      return this;
+    }
+    long[] drop = removed.stream().mapToLong(Long::longValue).sorted().toArray();
+    return new SubscriptionFilter(false, Arrays.stream(satelliteIds)
+        .filter(id -> Arrays.binarySearch(drop, id) < 0)
+        .toArray());
+  }
+}
@@ -0,0 +1,130 @@
+package TelemetryService.Service;
+
+import constellationsim.telemetry.proto.TelemetryBatch;
+import constellationsim.telemetry.proto.TelemetryUpdate;
+import java.util.Arrays;
+
+// телеметрия всех активных спутников за один такт
+// значения хранятся параллельными массивами, satelliteIds отсортированы по возрастанию
+// сериализованные формы (TelemetryUpdate каждого спутника и TelemetryBatch всего кадра)
+// строятся один раз при первом обращении; обращения - только из потока такта
+// кадр делится на пачки не больше maxBatchSatellites спутников с одним номером такта: одно
+// сообщение на весь парк превысило бы предел размера сообщения gRPC (4 МБ по умолчанию)
+final class TelemetryFrame {
+
+  static final TelemetryFrame EMPTY = new TelemetryFrame(0, new long[0], new double[0],
+      new double[0], 1);
+
+  private final long tick;
+  private final long[] satelliteIds;
+  private final double[] outsideTemperatures;
+  private final double[] insideTemperatures;
+  // те же значения в фиксированной точке (сотые доли градуса) - для потока изменений
+  private final int[] outsideCenti;
+  private final int[] insideCenti;
+  private final int maxBatchSatellites;
+
+  // TelemetryUpdate по слотам, создаются только для запрошенных спутников
+  private byte[][] updates;
+  private byte[][] batches;
+
+  TelemetryFrame(long tick, long[] satelliteIds, double[] outsideTemperatures,
+      double[] insideTemperatures, int maxBatchSatellites) {
+    this.tick = tick;
+    this.maxBatchSatellites = maxBatchSatellites;
+    this.satelliteIds = satelliteIds;
+    this.outsideTemperatures = outsideTemperatures;
+    this.insideTemperatures = insideTemperatures;
+    this.outsideCenti = toCenti(outsideTemperatures);
+    this.insideCenti = toCenti(insideTemperatures);
+  }
+
+  long tick() {
+    return tick;
+  }
+
+  long[] satelliteIds() {
+    return satelliteIds;
+  }
+
+  int[] outsideCenti() {
+    return outsideCenti;
+  }
+
+  int[] insideCenti() {
+    return insideCenti;
+  }
+
+  // индекс спутника в кадре или отрицательное число, если его нет
+  int indexOf(long satelliteId) {
+    return Arrays.binarySearch(satelliteIds, satelliteId);
+  }
+
+  // сериализованный TelemetryUpdate спутника в слоте slot
+  byte[] updateAt(int slot) {
+    if (updates == null) {
+      updates = new byte[satelliteIds.length][];
+    }
+    byte[] update = updates[slot];
+    if (update == null) {
+      update = buildUpdate(slot).toByteArray();
+      updates[slot] = update;
+    }
+    return update;
+  }
+
+  int maxBatchSatellites() {
+    return maxBatchSatellites;
+  }
+
+  // сериализованные TelemetryBatch со всеми спутниками кадра (пустой кадр - одна пустая пачка)
+  byte[][] batches() {
+    if (batches == null) {
+      batches = buildBatches(null, satelliteIds.length);
+    }
+    return batches;
+  }
+
+  // TelemetryBatch со спутниками из слотов slots[0..count) или null, если слотов нет
+  byte[][] batchesOf(int[] slots, int count) {
+    if (count == 0) {
+      return null;
+    }
+    return buildBatches(slots, count);
+  }
+
+  // slots == null - слоты по порядку
+  private byte[][] buildBatches(int[] slots, int count) {
+    int chunks = Math.max(1, (count + maxBatchSatellites - 1) / maxBatchSatellites);
+    byte[][] result = new byte[chunks][];
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int from = chunk * maxBatchSatellites;
+      int to = Math.min(count, from + maxBatchSatellites);
+      TelemetryBatch.Builder builder = TelemetryBatch.newBuilder().setTick(tick);
+      for (int i = from; i < to; i++) {
+        int slot = slots == null ? i : slots[i];
+        builder.addSatelliteIds(satelliteIds[slot])
+            .addOutsideTemperatures(outsideTemperatures[slot])
+            .addInsideTemperatures(insideTemperatures[slot]);
+      }
+      result[chunk] = builder.build().toByteArray();
+    }
+    return result;
+  }
+
+  private TelemetryUpdate buildUpdate(int index) {
+    return TelemetryUpdate.newBuilder()
+        .setSatelliteId(satelliteIds[index])
+        .setOutsideTemperature(outsideTemperatures[index])
+        .setInsideTemperature(insideTemperatures[index])
+        .build();
+  }
+
+  private static int[] toCenti(double[] values) {
+    int[] centi = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      centi[i] = (int) Math.round(values[i] * 100);
+    }
+    return centi;
+  }
+}
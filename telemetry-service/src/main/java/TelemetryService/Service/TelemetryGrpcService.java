@@ -1,93 +1,235 @@
 package TelemetryService.Service;
 
-import TelemetryService.Kafka.SatelliteRegistry;
+import TelemetryService.Service.TelemetrySubscriber.Mode;
+import constellationsim.telemetry.proto.TelemetryControl;
+import constellationsim.telemetry.proto.TelemetryDeltaRequest;
+import constellationsim.telemetry.proto.TelemetryHistory;
+import constellationsim.telemetry.proto.TelemetryHistoryRequest;
+import constellationsim.telemetry.proto.TelemetryReplayRequest;
 import constellationsim.telemetry.proto.TelemetryRequest;
 import constellationsim.telemetry.proto.TelemetryServiceGrpc;
-import constellationsim.telemetry.proto.TelemetryUpdate;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
 import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
-import jakarta.annotation.PreDestroy;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.ByteBuffer;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
 
+// StreamTelemetry, StreamTelemetryBatches, StreamTelemetryDeltas и SubscribeTelemetry отдают уже
+// сериализованные сообщения из общего такта (TelemetryTickEngine): методы регистрируются с
+// маршаллером байтов вместо protobuf маршаллера, для клиентов контракт не меняется
+// ReplayTelemetry отдает записи журнала прямо из отображенных в память сегментов
+// GetTelemetryHistory - обычный unary метод с protobuf маршаллером
 @GrpcService
 @RequiredArgsConstructor
-public class TelemetryGrpcService extends TelemetryServiceGrpc.TelemetryServiceImplBase {
+public class TelemetryGrpcService implements BindableService {
 
-  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-  private final Random random = new Random();
-  private final SatelliteRegistry satelliteRegistry;
+  // тот же метод, что в TelemetryServiceGrpc, но ответы - готовые байты сообщения
+  private static final MethodDescriptor<TelemetryRequest, byte[]> STREAM_TELEMETRY_RAW =
+      TelemetryServiceGrpc.getStreamTelemetryMethod()
+          .toBuilder(TelemetryServiceGrpc.getStreamTelemetryMethod().getRequestMarshaller(),
+              RawMessageMarshaller.INSTANCE)
+          .build();
 
-  public void streamTelemetry(TelemetryRequest request,
-      StreamObserver<TelemetryUpdate> responseObserver) {
+  private static final MethodDescriptor<TelemetryRequest, byte[]> STREAM_TELEMETRY_BATCHES_RAW =
+      TelemetryServiceGrpc.getStreamTelemetryBatchesMethod()
+          .toBuilder(TelemetryServiceGrpc.getStreamTelemetryBatchesMethod().getRequestMarshaller(),
+              RawMessageMarshaller.INSTANCE)
+          .build();
 
-    if (!(responseObserver instanceof ServerCallStreamObserver<TelemetryUpdate> serverObserver)) {
+  private static final MethodDescriptor<TelemetryDeltaRequest, byte[]> STREAM_TELEMETRY_DELTAS_RAW =
+      TelemetryServiceGrpc.getStreamTelemetryDeltasMethod()
+          .toBuilder(TelemetryServiceGrpc.getStreamTelemetryDeltasMethod().getRequestMarshaller(),
+              RawMessageMarshaller.INSTANCE)
+          .build();
+
+  private static final MethodDescriptor<TelemetryControl, byte[]> SUBSCRIBE_TELEMETRY_RAW =
+      TelemetryServiceGrpc.getSubscribeTelemetryMethod()
+          .toBuilder(TelemetryServiceGrpc.getSubscribeTelemetryMethod().getRequestMarshaller(),
+              RawMessageMarshaller.INSTANCE)
+          .build();
+
+  private static final MethodDescriptor<TelemetryReplayRequest, ByteBuffer> REPLAY_TELEMETRY_RAW =
+      TelemetryServiceGrpc.getReplayTelemetryMethod()
+          .toBuilder(TelemetryServiceGrpc.getReplayTelemetryMethod().getRequestMarshaller(),
+              ByteBufferMarshaller.INSTANCE)
+          .build();
+
+  private final TelemetryTickEngine tickEngine;
+  private final TelemetryHistoryStore historyStore;
+  private final TelemetryJournal journal;
+
+  // сколько спутников можно запросить в одном GetTelemetryHistory
+  @Value("${telemetry.history.max-query-satellites:1000}")
+  private int maxQuerySatellites;
+
+  public void streamTelemetry(TelemetryRequest request, StreamObserver<byte[]> responseObserver) {
+    if (!(responseObserver instanceof ServerCallStreamObserver<byte[]> serverObserver)) {
       responseObserver.onError(new IllegalStateException("Unexpected responseObserver type"));
       return;
     }
+    tickEngine.subscribe(filterOf(request), Mode.UPDATES, 0, serverObserver);
+  }
 
-    long filterId = request.getSatelliteId();
-    boolean sendAll = (filterId == 0);
-
-    serverObserver.setOnCancelHandler(this::cleanup);
+  public void streamTelemetryBatches(TelemetryRequest request,
+      StreamObserver<byte[]> responseObserver) {
+    if (!(responseObserver instanceof ServerCallStreamObserver<byte[]> serverObserver)) {
+      responseObserver.onError(new IllegalStateException("Unexpected responseObserver type"));
+      return;
+    }
+    tickEngine.subscribe(filterOf(request), Mode.BATCHES, 0, serverObserver);
+  }
 
-    scheduler.scheduleAtFixedRate(() -> {
-      if (serverObserver.isCancelled()) {
+  public void streamTelemetryDeltas(TelemetryDeltaRequest request,
+      StreamObserver<byte[]> responseObserver) {
+    if (!(responseObserver instanceof ServerCallStreamObserver<byte[]> serverObserver)) {
+      responseObserver.onError(new IllegalStateException("Unexpected responseObserver type"));
+      return;
+    }
+    if (!request.getCompression().isEmpty()) {
+      // сжатие применяется, только если клиент объявил его в grpc-accept-encoding
+      try {
+        serverObserver.setCompression(request.getCompression());
+      } catch (IllegalArgumentException e) {
+        serverObserver.onError(Status.INVALID_ARGUMENT
+            .withDescription("Неизвестное сжатие: " + request.getCompression())
+            .asRuntimeException());
         return;
       }
+    }
+    tickEngine.subscribe(filterOf(request.getSatelliteId(), request.getSatelliteIdsList()),
+        Mode.DELTAS, request.getDeadbandCenti(), serverObserver);
+  }
 
-      try {
-        Set<Long> targetIds = resolveTargetIds(filterId);
-        for (Long satId : targetIds) {
-          if (serverObserver.isCancelled()) {
-            return;
-          }
-
-          TelemetryUpdate update = TelemetryUpdate.newBuilder()
-              .setSatelliteId(satId.intValue())
-              .setInsideTemperature(20.0 + random.nextDouble() * 10)
-              .setOutsideTemperature(-50.0 + random.nextDouble() * 30)
-              .build();
-
-          serverObserver.onNext(update);
-        }
-      } catch (Exception e) {
-        if (!serverObserver.isCancelled()) {
-          serverObserver.onError(e);
-        }
+  // поток пачек с фильтром, который клиент меняет сообщениями TelemetryControl без
+  // переподключения; до первого set_filter или add клиент ничего не получает
+  public StreamObserver<TelemetryControl> subscribeTelemetry(
+      StreamObserver<byte[]> responseObserver) {
+    // ServerCalls.asyncBidiStreamingCall всегда передает ServerCallStreamObserver
+    ServerCallStreamObserver<byte[]> serverObserver =
+        (ServerCallStreamObserver<byte[]>) responseObserver;
+    TelemetrySubscriber subscriber = tickEngine.subscribe(SubscriptionFilter.NONE,
+        Mode.BATCHES, 0, serverObserver);
+    return new StreamObserver<>() {
+      // фильтр, отправленный в такт последним; сообщения клиента приходят по очереди
+      private SubscriptionFilter filter = SubscriptionFilter.NONE;
+
+      @Override
+      public void onNext(TelemetryControl control) {
+        filter = switch (control.getActionCase()) {
+          case SET_FILTER -> control.getSetFilter().getAll()
+              ? SubscriptionFilter.ALL
+              : SubscriptionFilter.ofIds(control.getSetFilter().getSatelliteIdsList());
+          case ADD -> filter.plus(control.getAdd().getIdsList());
+          case REMOVE -> filter.minus(control.getRemove().getIdsList());
+          case ACTION_NOT_SET -> filter;
+        };
+        tickEngine.updateFilter(subscriber, filter);
       }
-    }, 0, 2, TimeUnit.SECONDS);
-  }
 
-  public void cleanup() {
+      @Override
+      public void onError(Throwable t) {
+        subscriber.close();
+        tickEngine.unsubscribe(subscriber);
+      }
 
+      @Override
+      public void onCompleted() {
+        // клиент закрыл свою сторону - поток завершается; отправка с потока такта и из
+        // onReady исключена блокировкой подписчика
+        subscriber.complete();
+        tickEngine.unsubscribe(subscriber);
+      }
+    };
   }
 
-  @PreDestroy
-  public void shutdown() {
-    scheduler.shutdown();
-    try {
-      if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-        scheduler.shutdownNow();
-      }
-    } catch (InterruptedException e) {
-      scheduler.shutdownNow();
-      Thread.currentThread().interrupt();
+  // история читается из памяти, без обращения к БД
+  public void getTelemetryHistory(TelemetryHistoryRequest request,
+      StreamObserver<TelemetryHistory> responseObserver) {
+    long toMs = request.getToMs() > 0 ? request.getToMs() : System.currentTimeMillis();
+    String error = null;
+    if (request.getSatelliteIdsCount() == 0) {
+      error = "Не указаны спутники";
+    } else if (request.getSatelliteIdsCount() > maxQuerySatellites) {
+      error = "Спутников в запросе больше " + maxQuerySatellites;
+    } else if (request.getFromMs() > toMs) {
+      error = "from_ms больше to_ms";
+    } else if (request.getBucketMs() < 0) {
+      error = "bucket_ms меньше нуля";
+    }
+    if (error != null) {
+      responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(error)
+          .asRuntimeException());
+      return;
     }
+    long[] satelliteIds = request.getSatelliteIdsList().stream()
+        .mapToLong(Long::longValue)
+        .distinct()
+        .toArray();
+    responseObserver.onNext(historyStore.query(satelliteIds, request.getFromMs(), toMs,
+        request.getBucketMs()));
+    responseObserver.onCompleted();
   }
 
-  private Set<Long> resolveTargetIds(long filterId) {
-    if (filterId == 0) {
-      // Запрос "всех": возвращаем только активные из реестра
-      return satelliteRegistry.getActiveIds();
-    } else {
-      // Запрос конкретного: проверяем наличие в реестре
-      return satelliteRegistry.contains(filterId) ? Set.of(filterId) : Set.of();
+  // повтор журнала с момента from_ms, записи журнала отдаются без повторной сериализации
+  public void replayTelemetry(TelemetryReplayRequest request,
+      StreamObserver<ByteBuffer> responseObserver) {
+    if (!(responseObserver instanceof ServerCallStreamObserver<ByteBuffer> serverObserver)) {
+      responseObserver.onError(new IllegalStateException("Unexpected responseObserver type"));
+      return;
     }
+    long[] satelliteIds = request.getSatelliteIdsCount() == 0
+        ? null
+        : SubscriptionFilter.ofIds(request.getSatelliteIdsList()).satelliteIds();
+    JournalReplay replay = new JournalReplay(journal.cursor(request.getFromMs()), satelliteIds,
+        serverObserver);
+    serverObserver.setOnCancelHandler(replay::cancel);
+    serverObserver.setOnReadyHandler(replay::pump);
+    replay.pump();
+  }
+
+  private static SubscriptionFilter filterOf(TelemetryRequest request) {
+    return filterOf(request.getSatelliteId(), request.getSatelliteIdsList());
+  }
+
+  // satellite_id и satellite_ids объединяются; оба пустые - все спутники
+  private static SubscriptionFilter filterOf(long satelliteId, List<Long> satelliteIds) {
+    return SubscriptionFilter.of(satelliteId, satelliteIds);
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    // schema descriptor сохраняется - gRPC reflection продолжает описывать сервис
+    ServiceDescriptor serviceDescriptor = ServiceDescriptor
+        .newBuilder(TelemetryServiceGrpc.SERVICE_NAME)
+        .setSchemaDescriptor(TelemetryServiceGrpc.getServiceDescriptor().getSchemaDescriptor())
+        .addMethod(STREAM_TELEMETRY_RAW)
+        .addMethod(STREAM_TELEMETRY_BATCHES_RAW)
+        .addMethod(STREAM_TELEMETRY_DELTAS_RAW)
+        .addMethod(SUBSCRIBE_TELEMETRY_RAW)
+        .addMethod(TelemetryServiceGrpc.getGetTelemetryHistoryMethod())
+        .addMethod(REPLAY_TELEMETRY_RAW)
+        .build();
+    return ServerServiceDefinition.builder(serviceDescriptor)
+        .addMethod(STREAM_TELEMETRY_RAW,
+            ServerCalls.asyncServerStreamingCall(this::streamTelemetry))
+        .addMethod(STREAM_TELEMETRY_BATCHES_RAW,
+            ServerCalls.asyncServerStreamingCall(this::streamTelemetryBatches))
+        .addMethod(STREAM_TELEMETRY_DELTAS_RAW,
+            ServerCalls.asyncServerStreamingCall(this::streamTelemetryDeltas))
+        .addMethod(SUBSCRIBE_TELEMETRY_RAW,
+            ServerCalls.asyncBidiStreamingCall(this::subscribeTelemetry))
+        .addMethod(TelemetryServiceGrpc.getGetTelemetryHistoryMethod(),
+            ServerCalls.asyncUnaryCall(this::getTelemetryHistory))
+        .addMethod(REPLAY_TELEMETRY_RAW,
+            ServerCalls.asyncServerStreamingCall(this::replayTelemetry))
+        .build();
   }
 }
@@ -0,0 +1,308 @@
+package TelemetryService.Service;
+
+import constellationsim.telemetry.proto.SatelliteHistory;
+import constellationsim.telemetry.proto.TelemetryHistory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * История телеметрии в памяти: кольцевой буфер последних {@code telemetry.history.capacity}
+ * тактов на каждый спутник.
+ * <p>
+ * Значения хранятся в сотых долях градуса в блоках {@code int[]} по {@value #ROWS_PER_CHUNK}
+ * спутников: у спутника своя строка из {@code capacity} пар (снаружи, внутри), позиция такта в
+ * строке - {@code tick % capacity}. Память на спутник постоянна ({@code capacity * 8} байт) и не
+ * зависит от времени работы, новых объектов на такте не создается. Время тактов хранится одним
+ * общим кольцом, потому что все спутники записываются на одном такте.
+ * </p>
+ * <p>
+ * Строки выделяются спутникам при появлении в кадре и освобождаются при исчезновении - история
+ * деактивированного спутника не хранится. Запись - поток такта, запросы - потоки gRPC; доступ
+ * разделен блокировкой чтения/записи.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryHistoryStore {
+
+  // спутников в одном блоке значений
+  static final int ROWS_PER_CHUNK = 256;
+
+  private final MeterRegistry meterRegistry;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // сколько последних тактов хранится на спутник
+  @Getter
+  @Value("${telemetry.history.capacity:1800}")
+  private int capacity;
+
+  // предел точек на спутник в ответе
+  @Getter
+  @Value("${telemetry.history.max-points:1000}")
+  private int maxPoints;
+
+  // время тактов (unix ms) по позиции кольца
+  private long[] tickTimes;
+  // первый записанный такт: после перезапуска такты продолжают журнал, а не начинаются с 1
+  private long firstTick;
+  private long lastTick;
+
+  // блоки значений: строка row - chunks[row / ROWS_PER_CHUNK], смещение (row % ROWS_PER_CHUNK)
+  private int[][] chunks = new int[0][];
+  // первый записанный такт строки
+  private long[] rowFirstTick = new long[0];
+  // свободные строки
+  private int[] freeRows = new int[0];
+  private int freeCount;
+  private int rowCount;
+
+  // спутники кадра (тот же массив, что у кадра) и их строки
+  private long[] mappedIds = new long[0];
+  private int[] mappedRows = new int[0];
+
+  @PostConstruct
+  public void init() {
+    tickTimes = new long[capacity];
+    Gauge.builder("telemetry.history.memory", this, TelemetryHistoryStore::memoryBytes)
+        .description("Память под историю телеметрии")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    Gauge.builder("telemetry.history.satellites", this, TelemetryHistoryStore::satelliteCount)
+        .description("Спутники с историей в памяти")
+        .register(meterRegistry);
+    log.info("История телеметрии: {} тактов на спутник, {} байт на спутник", capacity,
+        (long) capacity * 2 * Integer.BYTES);
+  }
+
+  // записывает кадр (поток такта)
+  void record(TelemetryFrame frame, long timeMs) {
+    lock.writeLock().lock();
+    try {
+      long tick = frame.tick();
+      if (frame.satelliteIds() != mappedIds) {
+        remap(frame.satelliteIds(), tick);
+      }
+      // время тактов не убывает, даже если часы сдвинулись назад: на этом держится бинарный
+      // поиск по времени (firstTickAtOrAfter)
+      if (lastTick != 0) {
+        timeMs = Math.max(timeMs, tickTimes[(int) (lastTick % capacity)]);
+      }
+      int position = (int) (tick % capacity);
+      tickTimes[position] = timeMs;
+      if (firstTick == 0) {
+        firstTick = tick;
+      }
+      lastTick = tick;
+
+      int[] outside = frame.outsideCenti();
+      int[] inside = frame.insideCenti();
+      int rowLength = capacity * 2;
+      for (int i = 0; i < mappedRows.length; i++) {
+        int row = mappedRows[i];
+        int offset = (row % ROWS_PER_CHUNK) * rowLength + position * 2;
+        int[] chunk = chunks[row / ROWS_PER_CHUNK];
+        chunk[offset] = outside[i];
+        chunk[offset + 1] = inside[i];
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * История спутников за интервал с агрегацией.
+   *
+   * @param satelliteIds спутники; спутники без истории пропускаются
+   * @param fromMs       начало интервала, unix ms
+   * @param toMs         конец интервала, unix ms
+   * @param bucketMs     ширина интервала агрегации, 0 - значения каждого такта
+   */
+  public TelemetryHistory query(long[] satelliteIds, long fromMs, long toMs, long bucketMs) {
+    TelemetryHistory.Builder history = TelemetryHistory.newBuilder();
+    lock.readLock().lock();
+    try {
+      if (lastTick == 0) {
+        return history.setBucketMs(bucketMs).build();
+      }
+      long oldestTick = Math.max(firstTick, lastTick - capacity + 1);
+      long fromTick = firstTickAtOrAfter(oldestTick, fromMs);
+      long toTick = firstTickAtOrAfter(fromTick, toMs + 1) - 1;
+      if (toTick < fromTick) {
+        return history.setBucketMs(Math.max(0, bucketMs)).build();
+      }
+      // точек не больше maxPoints: интервал агрегации расширяется по времени хранимых тактов,
+      // а не запрошенного окна (from_ms = 0 растянул бы интервал на всю эпоху); отсчет
+      // интервалов - от первого такта в окне
+      long originMs = tickTimes[(int) (fromTick % capacity)];
+      long minBucket = (tickTimes[(int) (toTick % capacity)] - originMs) / maxPoints + 1;
+      if (bucketMs <= 0 && toTick - fromTick + 1 > maxPoints) {
+        bucketMs = minBucket;
+      } else if (bucketMs > 0) {
+        bucketMs = Math.max(bucketMs, minBucket);
+      }
+      history.setBucketMs(Math.max(0, bucketMs));
+      for (long satelliteId : satelliteIds) {
+        int slot = Arrays.binarySearch(mappedIds, satelliteId);
+        if (slot < 0) {
+          continue;
+        }
+        int row = mappedRows[slot];
+        long start = Math.max(fromTick, rowFirstTick[row]);
+        if (start > toTick) {
+          continue;
+        }
+        history.addSatellites(aggregate(satelliteId, row, start, toTick, originMs, bucketMs));
+      }
+      return history.build();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long memoryBytes() {
+    return (long) chunks.length * ROWS_PER_CHUNK * capacity * 2 * Integer.BYTES
+        + (long) capacity * Long.BYTES;
+  }
+
+  public int satelliteCount() {
+    return mappedRows.length;
+  }
+
+  // агрегирует такты [fromTick, toTick] строки row по интервалам bucketMs от originMs
+  private SatelliteHistory aggregate(long satelliteId, int row, long fromTick, long toTick,
+      long originMs, long bucketMs) {
+    SatelliteHistory.Builder series = SatelliteHistory.newBuilder().setSatelliteId(satelliteId);
+    int[] chunk = chunks[row / ROWS_PER_CHUNK];
+    int rowOffset = (row % ROWS_PER_CHUNK) * capacity * 2;
+
+    // текущий интервал: номер (такт без агрегации), начало и накопленные значения
+    long bucket = -1;
+    long bucketStartMs = 0;
+    int count = 0;
+    int outsideMin = 0;
+    int outsideMax = 0;
+    long outsideSum = 0;
+    int insideMin = 0;
+    int insideMax = 0;
+    long insideSum = 0;
+    for (long tick = fromTick; tick <= toTick; tick++) {
+      int position = (int) (tick % capacity);
+      long time = tickTimes[position];
+      long tickBucket = bucketMs > 0 ? (time - originMs) / bucketMs : tick;
+      int outside = chunk[rowOffset + position * 2];
+      int inside = chunk[rowOffset + position * 2 + 1];
+      if (tickBucket != bucket) {
+        if (count > 0) {
+          addPoint(series, bucketStartMs, count, outsideMin, outsideMax, outsideSum, insideMin,
+              insideMax, insideSum);
+        }
+        bucket = tickBucket;
+        bucketStartMs = bucketMs > 0 ? originMs + tickBucket * bucketMs : time;
+        count = 0;
+        outsideMin = outside;
+        outsideMax = outside;
+        outsideSum = 0;
+        insideMin = inside;
+        insideMax = inside;
+        insideSum = 0;
+      }
+      outsideMin = Math.min(outsideMin, outside);
+      outsideMax = Math.max(outsideMax, outside);
+      outsideSum += outside;
+      insideMin = Math.min(insideMin, inside);
+      insideMax = Math.max(insideMax, inside);
+      insideSum += inside;
+      count++;
+    }
+    if (count > 0) {
+      addPoint(series, bucketStartMs, count, outsideMin, outsideMax, outsideSum, insideMin,
+          insideMax, insideSum);
+    }
+    return series.build();
+  }
+
+  private static void addPoint(SatelliteHistory.Builder series, long startMs, int count,
+      int outsideMin, int outsideMax, long outsideSum, int insideMin, int insideMax,
+      long insideSum) {
+    series.addBucketStartMs(startMs)
+        .addOutsideMin(outsideMin / 100.0)
+        .addOutsideMax(outsideMax / 100.0)
+        .addOutsideAvg(outsideSum / (count * 100.0))
+        .addInsideMin(insideMin / 100.0)
+        .addInsideMax(insideMax / 100.0)
+        .addInsideAvg(insideSum / (count * 100.0));
+  }
+
+  // первый такт в [fromTick, lastTick] со временем >= timeMs или lastTick + 1
+  // время тактов не убывает - бинарный поиск по кольцу
+  private long firstTickAtOrAfter(long fromTick, long timeMs) {
+    long low = fromTick;
+    long high = lastTick + 1;
+    while (low < high) {
+      long middle = (low + high) >>> 1;
+      if (tickTimes[(int) (middle % capacity)] < timeMs) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // сопоставляет строки новому составу кадра: обход двух отсортированных списков, строки
+  // исчезнувших спутников освобождаются, новым выделяются
+  private void remap(long[] ids, long tick) {
+    int[] rows = new int[ids.length];
+    int old = 0;
+    for (int i = 0; i < ids.length; i++) {
+      while (old < mappedIds.length && mappedIds[old] < ids[i]) {
+        releaseRow(mappedRows[old++]);
+      }
+      if (old < mappedIds.length && mappedIds[old] == ids[i]) {
+        rows[i] = mappedRows[old++];
+      } else {
+        rows[i] = allocateRow(tick);
+      }
+    }
+    while (old < mappedIds.length) {
+      releaseRow(mappedRows[old++]);
+    }
+    mappedIds = ids;
+    mappedRows = rows;
+  }
+
+  private int allocateRow(long tick) {
+    int row;
+    if (freeCount > 0) {
+      row = freeRows[--freeCount];
+    } else {
+      row = rowCount++;
+      if (row / ROWS_PER_CHUNK == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunks.length + 1);
+        chunks[chunks.length - 1] = new int[ROWS_PER_CHUNK * capacity * 2];
+      }
+      if (row == rowFirstTick.length) {
+        rowFirstTick = Arrays.copyOf(rowFirstTick, chunks.length * ROWS_PER_CHUNK);
+      }
+    }
+    rowFirstTick[row] = tick;
+    return row;
+  }
+
+  private void releaseRow(int row) {
+    if (freeCount == freeRows.length) {
+      freeRows = Arrays.copyOf(freeRows, Math.max(16, freeRows.length * 2));
+    }
+    freeRows[freeCount++] = row;
+  }
+}
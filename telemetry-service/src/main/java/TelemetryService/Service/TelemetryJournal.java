@@ -0,0 +1,269 @@
+package TelemetryService.Service;
+
+import constellationsim.telemetry.proto.TelemetryBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Журнал телеметрии: каждый кадр дописывается в конец сегментов, отображенных в память.
+ * <p>
+ * Запись - сериализованная пачка TelemetryBatch кадра (та же, что отдается подписчикам пачек),
+ * поэтому журнал не сериализует кадр повторно, а повтор отдает записи клиенту как есть. Сегменты
+ * ({@link JournalSegment}) по {@code telemetry.journal.segment-bytes} создаются последовательно;
+ * у каждого сегмента разреженный индекс времени, по которому повтор находит начальную запись.
+ * </p>
+ * <p>
+ * Хранение ограничено суммарным размером ({@code max-bytes}) и возрастом ({@code max-age-ms}):
+ * старые сегменты удаляются целиком, активный сегмент не удаляется. При запуске сегменты
+ * открываются заново, запись продолжается после последней целой записи, а номер такта
+ * продолжается после такта последней записи ({@link #lastTick()}). Пишет только поток
+ * такта; список сегментов публикуется неизменяемым списком, читатели работают без блокировок.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryJournal {
+
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final MeterRegistry meterRegistry;
+
+  @Value("${telemetry.journal.enabled:true}")
+  private boolean enabled;
+
+  @Value("${telemetry.journal.dir:data/telemetry-journal}")
+  private Path dir;
+
+  // размер нового сегмента (больше только если в него не помещается один кадр)
+  @Value("${telemetry.journal.segment-bytes:67108864}")
+  private int segmentBytes;
+
+  // предел суммарного размера записей
+  @Value("${telemetry.journal.max-bytes:1073741824}")
+  private long maxBytes;
+
+  // сегменты, последняя запись которых старше, удаляются
+  @Value("${telemetry.journal.max-age-ms:86400000}")
+  private long maxAgeMs;
+
+  // каждая какая запись попадает в индекс времени
+  @Value("${telemetry.journal.index-interval:32}")
+  private int indexInterval;
+
+  // сегменты по возрастанию номера, последний - активный
+  private volatile List<JournalSegment> segments = List.of();
+  // такт последней записи, прочитанной при открытии
+  private long lastTick;
+
+  private Counter appendedBytes;
+  private Counter appendErrors;
+
+  @PostConstruct
+  public void open() throws IOException {
+    appendedBytes = Counter.builder("telemetry.journal.appended")
+        .description("Байты, записанные в журнал телеметрии")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    appendErrors = Counter.builder("telemetry.journal.errors")
+        .description("Кадры, которые не удалось записать в журнал")
+        .register(meterRegistry);
+    Gauge.builder("telemetry.journal.size", this, TelemetryJournal::sizeBytes)
+        .description("Суммарный размер записей в журнале телеметрии")
+        .baseUnit("bytes")
+        .register(meterRegistry);
+    Gauge.builder("telemetry.journal.segments", this, journal -> journal.segments.size())
+        .description("Число сегментов журнала телеметрии")
+        .register(meterRegistry);
+    if (!enabled) {
+      return;
+    }
+
+    Files.createDirectories(dir);
+    List<Path> files;
+    try (Stream<Path> list = Files.list(dir)) {
+      files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+          .sorted()
+          .toList();
+    }
+    List<JournalSegment> opened = new ArrayList<>(files.size() + 1);
+    for (Path file : files) {
+      opened.add(JournalSegment.open(file, sequenceOf(file), indexInterval));
+    }
+    if (opened.isEmpty()) {
+      opened.add(createSegment(0, segmentBytes));
+    }
+    segments = List.copyOf(opened);
+    lastTick = readLastTick();
+    log.info("Журнал телеметрии {}: {} сегментов, {} байт записей, последний такт {}", dir,
+        segments.size(), sizeBytes(), lastTick);
+  }
+
+  // такт последней записи журнала, 0 - журнал пуст или выключен; такт генератора продолжается
+  // с него, чтобы такты повтора не шли назад после перезапуска
+  long lastTick() {
+    return lastTick;
+  }
+
+  // дописывает кадр (поток такта) - запись на каждую пачку кадра, как их получают подписчики;
+  // ошибка записи не останавливает поток телеметрии
+  void append(TelemetryFrame frame, long timeMs) {
+    if (!enabled || frame.satelliteIds().length == 0) {
+      return;
+    }
+    try {
+      for (byte[] body : frame.batches()) {
+        append(body, timeMs);
+      }
+      enforceRetention(timeMs);
+    } catch (IOException e) {
+      appendErrors.increment();
+      log.error("Ошибка записи кадра {} в журнал телеметрии", frame.tick(), e);
+    }
+  }
+
+  private void append(byte[] body, long timeMs) throws IOException {
+    JournalSegment active = active();
+    if (!active.append(timeMs, body)) {
+      active.force();
+      int size = Math.max(segmentBytes, JournalSegment.HEADER_BYTES + body.length);
+      JournalSegment next = createSegment(active.sequence() + 1, size);
+      next.append(timeMs, body);
+      List<JournalSegment> rolled = new ArrayList<>(segments);
+      rolled.add(next);
+      segments = List.copyOf(rolled);
+    }
+    appendedBytes.increment(JournalSegment.HEADER_BYTES + body.length);
+  }
+
+  // курсор по записям начиная с первой со временем >= fromMs
+  JournalCursor cursor(long fromMs) {
+    List<JournalSegment> current = segments;
+    for (JournalSegment segment : current) {
+      if (segment.lastTimeMs() >= fromMs) {
+        return new JournalCursor(segment, segment.positionAtOrAfter(fromMs));
+      }
+    }
+    // все записи старше fromMs - повтор начинается с конца журнала
+    JournalSegment last = current.isEmpty() ? null : current.get(current.size() - 1);
+    return new JournalCursor(last, last == null ? 0 : last.end());
+  }
+
+  public long sizeBytes() {
+    long size = 0;
+    for (JournalSegment segment : segments) {
+      size += segment.end();
+    }
+    return size;
+  }
+
+  @PreDestroy
+  public void close() {
+    if (!segments.isEmpty()) {
+      active().force();
+    }
+  }
+
+  // сегмент, следующий за segment, или null, если segment - активный
+  private JournalSegment segmentAfter(JournalSegment segment) {
+    for (JournalSegment candidate : segments) {
+      if (candidate.sequence() > segment.sequence()) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private JournalSegment active() {
+    return segments.get(segments.size() - 1);
+  }
+
+  // удаляет самые старые сегменты сверх предела размера и старше предела возраста
+  private void enforceRetention(long nowMs) throws IOException {
+    List<JournalSegment> current = segments;
+    long size = sizeBytes();
+    int drop = 0;
+    while (drop < current.size() - 1) {
+      JournalSegment oldest = current.get(drop);
+      if (size <= maxBytes && oldest.lastTimeMs() >= nowMs - maxAgeMs) {
+        break;
+      }
+      size -= oldest.end();
+      drop++;
+    }
+    if (drop == 0) {
+      return;
+    }
+    segments = List.copyOf(current.subList(drop, current.size()));
+    for (JournalSegment segment : current.subList(0, drop)) {
+      segment.delete();
+      log.info("Сегмент журнала телеметрии {} удален по хранению", segment.sequence());
+    }
+  }
+
+  // последняя запись - в последнем непустом сегменте (активный сегмент мог только что создаться)
+  private long readLastTick() throws IOException {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      ByteBuffer body = segments.get(i).lastBody();
+      if (body != null) {
+        return TelemetryBatch.parseFrom(body).getTick();
+      }
+    }
+    return 0;
+  }
+
+  private JournalSegment createSegment(long sequence, int size) throws IOException {
+    return JournalSegment.create(dir.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX)),
+        sequence, size, indexInterval);
+  }
+
+  private static long sequenceOf(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  // последовательное чтение журнала; записи отдаются срезами отображенных сегментов без
+  // копирования в кучу; курсор используется одним потоком
+  final class JournalCursor {
+
+    private JournalSegment segment;
+    private int position;
+
+    private JournalCursor(JournalSegment segment, int position) {
+      this.segment = segment;
+      this.position = position;
+    }
+
+    // тело следующей записи или null, если курсор дошел до конца журнала
+    ByteBuffer next() {
+      while (segment != null) {
+        if (position < segment.end()) {
+          ByteBuffer body = segment.body(position);
+          position = segment.next(position);
+          return body;
+        }
+        JournalSegment following = segmentAfter(segment);
+        if (following == null) {
+          return null;
+        }
+        segment = following;
+        position = 0;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package TelemetryService.Service;
+
+import constellationsim.telemetry.proto.TelemetryDelta;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Подписчик потока телеметрии с буфером последних значений.
+ * <p>
+ * Обновления не передаются gRPC сразу, а складываются в буфер "спутник -> последнее значение".
+ * Буфер отдается клиенту, пока {@code isReady()} (по такту и из {@code setOnReadyHandler}).
+ * Если клиент не успевает, новое значение спутника заменяет еще не отправленное старое
+ * (coalesced), поэтому в буфере не больше одного сообщения на спутник. Если буфер достиг
+ * {@code maxPending} спутников, обновления новых спутников отбрасываются (dropped). Память на
+ * подписчика ограничена независимо от скорости клиента.
+ * </p>
+ * <p>
+ * Подписчик потока пачек ({@link Mode#BATCHES}) держит пачки не больше одного кадра: пачки
+ * нового кадра заменяют неотправленные пачки старого целиком.
+ * </p>
+ * <p>
+ * Подписчик потока изменений ({@link Mode#DELTAS}) держит последний кадр и значения, которые
+ * клиент уже получил. Изменение строится в момент отправки: первое сообщение - полный снимок,
+ * дальше - только спутники, сдвинувшиеся больше чем на порог относительно отправленного значения,
+ * и исчезнувшие спутники. Пропущенные из-за медленного клиента кадры просто не отправляются.
+ * Изменение больше {@code maxMessageSatellites} спутников делится на несколько сообщений с одним
+ * тактом; snapshot = true только у первого.
+ * </p>
+ * <p>
+ * Отправка синхронизирована: onNext вызывается либо потоком такта, либо потоком gRPC, но не
+ * одновременно. Завершение вызова ({@link #complete()}, {@link #fail(Throwable)}) идет под той же
+ * блокировкой и закрывает подписчика: кадры, пришедшие до снятия подписки потоком такта, уже не
+ * отправляются.
+ * </p>
+ */
+public final class TelemetrySubscriber {
+
+  // вид потока
+  public enum Mode {
+    // TelemetryUpdate на каждый спутник
+    UPDATES,
+    // TelemetryBatch на такт
+    BATCHES,
+    // TelemetryDelta: снимок, затем изменения больше порога
+    DELTAS
+  }
+
+  // номер потока - для метрик и логов
+  @Getter
+  private final long streamId;
+  @Getter
+  private final Mode mode;
+  private final ServerCallStreamObserver<byte[]> observer;
+  private final int maxPending;
+  // спутников в одном сообщении изменений (DELTAS)
+  private final int maxMessageSatellites;
+  // порог изменения в сотых долях градуса (DELTAS)
+  private final int deadbandCenti;
+
+  // текущий фильтр; меняется и читается только потоком такта (см. TelemetryTickEngine)
+  @Getter
+  private SubscriptionFilter filter;
+  // слоты кадра, выбранные для подписчика на текущем такте (поток такта, буфер переиспользуется)
+  private int[] selected = new int[16];
+  private int selectedCount;
+
+  // спутник -> последнее неотправленное обновление, в порядке появления (UPDATES)
+  private final Map<Long, byte[]> pending = new LinkedHashMap<>();
+  // неотправленные сообщения кадра: пачки (BATCHES) или части изменения (DELTAS);
+  // отправлены сообщения до outgoingIndex
+  private byte[][] outgoing;
+  private int outgoingIndex;
+  // последний кадр, изменения которого еще не отправлены, и выбранные в нем слоты (DELTAS)
+  private TelemetryFrame pendingFrame;
+  private int[] pendingSlots;
+
+  // что клиент уже получил (DELTAS), id по возрастанию; null - снимок еще не отправлен
+  private long[] sentIds;
+  private int[] sentOutside;
+  private int[] sentInside;
+
+  // вызов завершен или отменен клиентом - буферы очищены, отправки нет
+  private boolean closed;
+
+  @Getter
+  private volatile long sent;
+  @Getter
+  private volatile long coalesced;
+  @Getter
+  private volatile long dropped;
+
+  TelemetrySubscriber(long streamId, SubscriptionFilter filter, Mode mode,
+      ServerCallStreamObserver<byte[]> observer, int maxPending, int maxMessageSatellites,
+      int deadbandCenti) {
+    this.streamId = streamId;
+    this.maxMessageSatellites = maxMessageSatellites;
+    this.filter = filter;
+    this.mode = mode;
+    this.observer = observer;
+    this.maxPending = maxPending;
+    this.deadbandCenti = deadbandCenti;
+  }
+
+  boolean isCancelled() {
+    return observer.isCancelled();
+  }
+
+  void setFilter(SubscriptionFilter filter) {
+    this.filter = filter;
+  }
+
+  // выбирает слот кадра для текущего такта (поток такта)
+  void select(int slot) {
+    if (selectedCount == selected.length) {
+      selected = Arrays.copyOf(selected, selected.length * 2);
+    }
+    selected[selectedCount++] = slot;
+  }
+
+  // кладет в буфер спутники, выбранные через select (по возрастанию id), и сбрасывает выбор
+  void offerSelected(TelemetryFrame frame) {
+    Arrays.sort(selected, 0, selectedCount);
+    try {
+      offer(frame, selected, selectedCount);
+    } finally {
+      selectedCount = 0;
+    }
+  }
+
+  // кладет обновления кадра в буфер и отправляет, сколько клиент готов принять
+  // slots == null - все спутники кадра, иначе слоты slots[0..count) по возрастанию
+  synchronized void offer(TelemetryFrame frame, int[] slots, int count) {
+    if (closed) {
+      return;
+    }
+    switch (mode) {
+      case BATCHES -> {
+        byte[][] batches = slots == null ? frame.batches() : frame.batchesOf(slots, count);
+        if (batches != null) {
+          if (outgoing != null) {
+            coalesced++;
+          }
+          outgoing = batches;
+          outgoingIndex = 0;
+        }
+      }
+      case DELTAS -> {
+        if (pendingFrame != null) {
+          coalesced++;
+        }
+        // выбор слотов нужен в момент отправки - копируется
+        pendingFrame = frame;
+        pendingSlots = slots == null ? null : Arrays.copyOf(slots, count);
+      }
+      case UPDATES -> {
+        long[] ids = frame.satelliteIds();
+        int total = slots == null ? ids.length : count;
+        for (int i = 0; i < total; i++) {
+          int slot = slots == null ? i : slots[i];
+          enqueue(ids[slot], frame.updateAt(slot));
+        }
+      }
+    }
+    drain();
+  }
+
+  // отправляет буфер, пока транспорт готов принимать сообщения
+  synchronized void drain() {
+    if (closed) {
+      return;
+    }
+    sendOutgoing();
+    // следующее изменение строится, только когда части предыдущего отправлены: состояние
+    // клиента в buildDelta уже учитывает их
+    if (outgoing == null && pendingFrame != null && isWritable()) {
+      TelemetryFrame frame = pendingFrame;
+      int[] slots = pendingSlots;
+      pendingFrame = null;
+      pendingSlots = null;
+      outgoing = buildDelta(frame, slots);
+      outgoingIndex = 0;
+      sendOutgoing();
+    }
+    Iterator<byte[]> iterator = pending.values().iterator();
+    while (iterator.hasNext() && isWritable()) {
+      byte[] update = iterator.next();
+      iterator.remove();
+      send(update);
+    }
+  }
+
+  // закрывает вызов с ошибкой (вызов мог быть уже закрыт)
+  synchronized void fail(Throwable error) {
+    if (closed) {
+      return;
+    }
+    close();
+    try {
+      observer.onError(error);
+    } catch (Exception ignored) {
+      // вызов уже закрыт
+    }
+  }
+
+  // завершает вызов: неотправленное отбрасывается
+  synchronized void complete() {
+    if (closed) {
+      return;
+    }
+    close();
+    try {
+      observer.onCompleted();
+    } catch (Exception ignored) {
+      // вызов уже закрыт
+    }
+  }
+
+  // прекращает отправку без закрытия вызова (клиент отменил вызов)
+  synchronized void close() {
+    closed = true;
+    pending.clear();
+    outgoing = null;
+    pendingFrame = null;
+    pendingSlots = null;
+  }
+
+  synchronized int pendingCount() {
+    return pending.size() + (outgoing != null ? outgoing.length - outgoingIndex : 0)
+        + (pendingFrame != null ? 1 : 0);
+  }
+
+  private void sendOutgoing() {
+    while (outgoing != null && isWritable()) {
+      send(outgoing[outgoingIndex++]);
+      if (outgoingIndex == outgoing.length) {
+        outgoing = null;
+      }
+    }
+  }
+
+  private boolean isWritable() {
+    return observer.isReady() && !observer.isCancelled();
+  }
+
+  private void send(byte[] message) {
+    observer.onNext(message);
+    sent++;
+  }
+
+  private void enqueue(long id, byte[] update) {
+    if (pending.replace(id, update) != null) {
+      coalesced++;
+    } else if (pending.size() < maxPending) {
+      pending.put(id, update);
+    } else {
+      dropped++;
+    }
+  }
+
+  // сравнивает выбранные слоты кадра (null - все) с отправленными значениями (оба списка
+  // отсортированы по id) и запоминает новое состояние клиента; null - изменений нет
+  private byte[][] buildDelta(TelemetryFrame frame, int[] slots) {
+    long[] ids = frame.satelliteIds();
+    int[] outside = frame.outsideCenti();
+    int[] inside = frame.insideCenti();
+    int count = slots == null ? ids.length : slots.length;
+
+    boolean snapshot = sentIds == null;
+    List<byte[]> messages = new ArrayList<>();
+    TelemetryDelta.Builder delta = TelemetryDelta.newBuilder()
+        .setTick(frame.tick())
+        .setSnapshot(snapshot);
+    long[] nextIds = new long[count];
+    int[] nextOutside = new int[count];
+    int[] nextInside = new int[count];
+    int sentIndex = 0;
+    int sentCount = snapshot ? 0 : sentIds.length;
+
+    for (int next = 0; next < count; next++) {
+      int i = slots == null ? next : slots[next];
+      long id = ids[i];
+      while (sentIndex < sentCount && sentIds[sentIndex] < id) {
+        delta.addRemovedSatelliteIds(sentIds[sentIndex++]);
+        delta = flushIfFull(delta, messages);
+      }
+      nextIds[next] = id;
+      boolean known = sentIndex < sentCount && sentIds[sentIndex] == id;
+      if (known && Math.abs(outside[i] - sentOutside[sentIndex]) <= deadbandCenti
+          && Math.abs(inside[i] - sentInside[sentIndex]) <= deadbandCenti) {
+        // в пределах порога - у клиента остается отправленное значение
+        nextOutside[next] = sentOutside[sentIndex];
+        nextInside[next] = sentInside[sentIndex];
+      } else {
+        nextOutside[next] = outside[i];
+        nextInside[next] = inside[i];
+        delta.addSatelliteIds(id).addOutsideCenti(outside[i]).addInsideCenti(inside[i]);
+        delta = flushIfFull(delta, messages);
+      }
+      if (known) {
+        sentIndex++;
+      }
+    }
+    while (sentIndex < sentCount) {
+      delta.addRemovedSatelliteIds(sentIds[sentIndex++]);
+      delta = flushIfFull(delta, messages);
+    }
+
+    sentIds = nextIds;
+    sentOutside = nextOutside;
+    sentInside = nextInside;
+    // пустой снимок тоже отправляется: клиент должен узнать, что спутников нет
+    if (delta.getSatelliteIdsCount() > 0 || delta.getRemovedSatelliteIdsCount() > 0
+        || (snapshot && messages.isEmpty())) {
+      messages.add(delta.build().toByteArray());
+    }
+    return messages.isEmpty() ? null : messages.toArray(byte[][]::new);
+  }
+
+  // заполненная часть изменения уходит в messages, продолжение - без признака снимка
+  private TelemetryDelta.Builder flushIfFull(TelemetryDelta.Builder delta,
+      List<byte[]> messages) {
+    if (delta.getSatelliteIdsCount() + delta.getRemovedSatelliteIdsCount()
+        < maxMessageSatellites) {
+      return delta;
+    }
+    messages.add(delta.build().toByteArray());
+    return TelemetryDelta.newBuilder().setTick(delta.getTick());
+  }
+}
@@ -0,0 +1,330 @@
+package TelemetryService.Service;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Общий такт генерации телеметрии.
+ * <p>
+ * Раз в {@code telemetry.stream.interval-ms} делает шаг тепловой модели
+ * ({@link ThermalSimulation}) для всех активных спутников, один раз сериализует каждое
+ * обновление в кадр {@link TelemetryFrame} и рассылает кадр всем живым подписчикам. Стоимость
+ * генерации и сериализации зависит от размера флота, а не от произведения размера флота на
+ * число подписчиков.
+ * </p>
+ * <p>
+ * Кадр не отправляется подписчику напрямую, а кладется в его буфер последних значений
+ * ({@link TelemetrySubscriber}), который отдается с учетом flow control gRPC. Медленный клиент
+ * получает самые свежие значения, а память на подписчика ограничена. Подписка удаляется при
+ * отмене вызова клиентом или ошибке отправки. Каждый кадр также записывается в историю
+ * ({@link TelemetryHistoryStore}) и журнал ({@link TelemetryJournal}).
+ * </p>
+ * <p>
+ * Подписчики разложены по фильтрам ({@link SubscriptionFilter}): подписчики на все спутники
+ * получают кадр целиком, а для остальных ведется индекс "спутник -> подписчики". На такте
+ * обходится индекс, а не произведение подписчиков на флот: каждому подписчику достаются только
+ * слоты его спутников. Индекс меняется и читается только потоком такта - подписка, отписка и
+ * смена фильтра ставятся в его очередь, поэтому такт не видит наполовину измененный индекс.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryTickEngine {
+
+  private final ThermalSimulation simulation;
+  private final TelemetryHistoryStore history;
+  private final TelemetryJournal journal;
+  private final MeterRegistry meterRegistry;
+
+  private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "telemetry-tick");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private final Set<TelemetrySubscriber> subscriptions = ConcurrentHashMap.newKeySet();
+  // маршрутизация кадра, только поток такта:
+  // подписчики на все спутники
+  private final List<TelemetrySubscriber> broadcast = new ArrayList<>();
+  // подписчики с фильтром и индекс спутник -> подписчики с этим спутником в фильтре
+  private final List<TelemetrySubscriber> filtered = new ArrayList<>();
+  private final Map<Long, List<TelemetrySubscriber>> index = new HashMap<>();
+  // метрики потоков, удаляются вместе с подпиской
+  private final Map<TelemetrySubscriber, List<Meter>> streamMeters = new ConcurrentHashMap<>();
+  private final AtomicLong streamIds = new AtomicLong();
+
+  // период генерации телеметрии
+  @Value("${telemetry.stream.interval-ms:2000}")
+  private long intervalMs;
+
+  // сколько спутников может ждать отправки в буфере одного подписчика
+  @Value("${telemetry.stream.max-pending:100000}")
+  private int maxPending;
+
+  // спутников в одном сообщении пачки или изменения (~21 байт на спутник в TelemetryBatch):
+  // кадр парка делится на сообщения меньше предела размера сообщения gRPC клиента
+  @Value("${telemetry.stream.max-batch-satellites:50000}")
+  private int maxBatchSatellites;
+
+  // порог потока изменений по умолчанию, в сотых долях градуса
+  @Value("${telemetry.stream.deadband-centi:50}")
+  private int defaultDeadbandCenti;
+
+  // последний кадр - отправляется новому подписчику сразу, не дожидаясь следующего такта
+  private volatile TelemetryFrame lastFrame = TelemetryFrame.EMPTY;
+  private long tick;
+
+  private Timer tickDuration;
+
+  @PostConstruct
+  public void start() {
+    tickDuration = Timer.builder("telemetry.tick.duration")
+        .description("Время генерации кадра телеметрии и рассылки его подписчикам")
+        .register(meterRegistry);
+    Gauge.builder("telemetry.subscribers", subscriptions, Set::size)
+        .description("Число активных подписок на поток телеметрии")
+        .register(meterRegistry);
+    // журнал переживает перезапуск - такты продолжают его записи, а не начинаются с 1
+    tick = journal.lastTick();
+    ticker.scheduleAtFixedRate(this::runTick, 0, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  // регистрирует подписчика; буфер отдается, когда транспорт готов, подписка снимается при
+  // отмене вызова (обработчики нужно установить до выхода из метода gRPC)
+  // deadbandCenti - порог потока изменений (DELTAS), 0 - порог по умолчанию
+  public TelemetrySubscriber subscribe(SubscriptionFilter filter, TelemetrySubscriber.Mode mode,
+      int deadbandCenti, ServerCallStreamObserver<byte[]> observer) {
+    TelemetrySubscriber subscriber = new TelemetrySubscriber(streamIds.incrementAndGet(),
+        filter, mode, observer, maxPending, maxBatchSatellites,
+        deadbandCenti > 0 ? deadbandCenti : defaultDeadbandCenti);
+    observer.setOnCancelHandler(() -> {
+      subscriber.close();
+      unsubscribe(subscriber);
+    });
+    observer.setOnReadyHandler(() -> drain(subscriber));
+    registerStreamMetrics(subscriber);
+    subscriptions.add(subscriber);
+    onTicker(() -> {
+      route(subscriber);
+      sendLast(subscriber);
+    });
+    log.info("Новая подписка на телеметрию #{} (спутники: {}, {}), всего подписок {}",
+        subscriber.getStreamId(), describe(filter), mode, subscriptions.size());
+    return subscriber;
+  }
+
+  // меняет фильтр подписки; клиент сразу получает последний кадр по новому фильтру
+  public void updateFilter(TelemetrySubscriber subscriber, SubscriptionFilter filter) {
+    onTicker(() -> {
+      if (!subscriptions.contains(subscriber)) {
+        return;
+      }
+      unroute(subscriber);
+      subscriber.setFilter(filter);
+      route(subscriber);
+      sendLast(subscriber);
+    });
+    log.debug("Фильтр подписки #{} изменен (спутники: {})", subscriber.getStreamId(),
+        describe(filter));
+  }
+
+  public void unsubscribe(TelemetrySubscriber subscriber) {
+    if (subscriptions.remove(subscriber)) {
+      List<Meter> meters = streamMeters.remove(subscriber);
+      if (meters != null) {
+        meters.forEach(meterRegistry::remove);
+      }
+      onTicker(() -> unroute(subscriber));
+      log.info("Подписка на телеметрию #{} снята (отправлено {}, заменено {}, отброшено {}), "
+              + "осталось {}", subscriber.getStreamId(), subscriber.getSent(),
+          subscriber.getCoalesced(), subscriber.getDropped(), subscriptions.size());
+    }
+  }
+
+  private void runTick() {
+    try {
+      tickDuration.record(() -> {
+        TelemetryFrame frame = buildFrame();
+        lastFrame = frame;
+        long now = System.currentTimeMillis();
+        history.record(frame, now);
+        journal.append(frame, now);
+        for (TelemetrySubscriber subscriber : broadcast) {
+          send(subscriber, frame);
+        }
+        // слоты кадра раздаются по индексу; подписчик без спутников в кадре тоже получает
+        // кадр - поток изменений сообщает об исчезнувших спутниках
+        for (Map.Entry<Long, List<TelemetrySubscriber>> entry : index.entrySet()) {
+          int slot = frame.indexOf(entry.getKey());
+          if (slot >= 0) {
+            for (TelemetrySubscriber subscriber : entry.getValue()) {
+              subscriber.select(slot);
+            }
+          }
+        }
+        for (TelemetrySubscriber subscriber : filtered) {
+          send(subscriber, frame);
+        }
+      });
+    } catch (Exception e) {
+      // исключение остановило бы scheduleAtFixedRate
+      log.error("Ошибка такта телеметрии", e);
+    }
+  }
+
+  // шаг тепловой модели; кадр получает копии значений, потому что подписчики могут держать его
+  // дольше такта (массив id после создания не меняется и не копируется)
+  private TelemetryFrame buildFrame() {
+    simulation.step(++tick);
+    return new TelemetryFrame(tick, simulation.ids(), simulation.outside().clone(),
+        simulation.inside().clone(), maxBatchSatellites);
+  }
+
+  // отправляет кадр подписчику; подписчику с фильтром - слоты, выбранные через select
+  private void send(TelemetrySubscriber subscriber, TelemetryFrame frame) {
+    if (subscriber.isCancelled()) {
+      unsubscribe(subscriber);
+      return;
+    }
+    if (!subscriptions.contains(subscriber)) {
+      // подписка уже снята, удаление из индекса ждет в очереди такта
+      return;
+    }
+    try {
+      if (subscriber.getFilter().all()) {
+        subscriber.offer(frame, null, 0);
+      } else {
+        subscriber.offerSelected(frame);
+      }
+    } catch (Exception e) {
+      closeWithError(subscriber, e);
+    }
+  }
+
+  // последний кадр по текущему фильтру подписчика (поток такта)
+  private void sendLast(TelemetrySubscriber subscriber) {
+    TelemetryFrame frame = lastFrame;
+    SubscriptionFilter filter = subscriber.getFilter();
+    if (!filter.all()) {
+      for (long satelliteId : filter.satelliteIds()) {
+        int slot = frame.indexOf(satelliteId);
+        if (slot >= 0) {
+          subscriber.select(slot);
+        }
+      }
+    }
+    send(subscriber, frame);
+  }
+
+  // добавляет подписчика в структуры маршрутизации (поток такта)
+  private void route(TelemetrySubscriber subscriber) {
+    SubscriptionFilter filter = subscriber.getFilter();
+    if (filter.all()) {
+      broadcast.add(subscriber);
+      return;
+    }
+    filtered.add(subscriber);
+    for (long satelliteId : filter.satelliteIds()) {
+      index.computeIfAbsent(satelliteId, id -> new ArrayList<>(2)).add(subscriber);
+    }
+  }
+
+  private void unroute(TelemetrySubscriber subscriber) {
+    SubscriptionFilter filter = subscriber.getFilter();
+    if (filter.all()) {
+      broadcast.remove(subscriber);
+      return;
+    }
+    filtered.remove(subscriber);
+    for (long satelliteId : filter.satelliteIds()) {
+      List<TelemetrySubscriber> subscribers = index.get(satelliteId);
+      if (subscribers != null && subscribers.remove(subscriber) && subscribers.isEmpty()) {
+        index.remove(satelliteId);
+      }
+    }
+  }
+
+  // ставит изменение маршрутизации в очередь потока такта (после остановки - не нужно)
+  private void onTicker(Runnable task) {
+    try {
+      ticker.execute(task);
+    } catch (RejectedExecutionException e) {
+      log.debug("Такт телеметрии остановлен, изменение подписки пропущено");
+    }
+  }
+
+  private static String describe(SubscriptionFilter filter) {
+    return filter.all() ? "все" : String.valueOf(filter.satelliteIds().length);
+  }
+
+  // вызывается потоком gRPC, когда клиент готов принять еще сообщения
+  private void drain(TelemetrySubscriber subscriber) {
+    try {
+      subscriber.drain();
+    } catch (Exception e) {
+      closeWithError(subscriber, e);
+    }
+  }
+
+  private void closeWithError(TelemetrySubscriber subscriber, Exception e) {
+    log.warn("Ошибка отправки телеметрии подписчику #{}, подписка снята",
+        subscriber.getStreamId(), e);
+    unsubscribe(subscriber);
+    subscriber.fail(e);
+  }
+
+  private void registerStreamMetrics(TelemetrySubscriber subscriber) {
+    String stream = String.valueOf(subscriber.getStreamId());
+    streamMeters.put(subscriber, List.of(
+        FunctionCounter.builder("telemetry.stream.coalesced", subscriber,
+                TelemetrySubscriber::getCoalesced)
+            .description("Неотправленные обновления, замененные более новыми")
+            .tag("stream", stream)
+            .tag("mode", subscriber.getMode().name())
+            .register(meterRegistry),
+        FunctionCounter.builder("telemetry.stream.dropped", subscriber,
+                TelemetrySubscriber::getDropped)
+            .description("Обновления, отброшенные из-за заполненного буфера")
+            .tag("stream", stream)
+            .register(meterRegistry),
+        Gauge.builder("telemetry.stream.pending", subscriber, TelemetrySubscriber::pendingCount)
+            .description("Обновления в буфере подписчика, ожидающие отправки")
+            .tag("stream", stream)
+            .register(meterRegistry)));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ticker.shutdown();
+    try {
+      if (!ticker.awaitTermination(5, TimeUnit.SECONDS)) {
+        ticker.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      ticker.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
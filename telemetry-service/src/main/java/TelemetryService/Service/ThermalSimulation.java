@@ -0,0 +1,253 @@
+package TelemetryService.Service;
+
+import TelemetryService.Kafka.SatelliteRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Детерминированная тепловая модель спутников.
+ * <p>
+ * Для каждого спутника моделируется орбитальный цикл день/ночь: снаружи температура стремится к
+ * температуре освещенной или теневой стороны орбиты, внутри - обменивается теплом с обшивкой и
+ * подогревается термостатом до уставки. Параметры спутника (период орбиты, фаза, температуры
+ * сторон, уставка) и шум вычисляются хешем от {@code telemetry.simulation.seed}, id спутника и
+ * номера такта, поэтому один и тот же seed всегда дает одни и те же значения, независимо от
+ * порядка спутников и числа потоков.
+ * </p>
+ * <p>
+ * Состояние хранится массивами примитивов по слотам (struct-of-arrays), слоты упорядочены по id.
+ * Шаг модели не создает объектов: массив делится на диапазоны, которые считают постоянные рабочие
+ * потоки, синхронизированные барьером. Массивы пересоздаются только при изменении состава
+ * реестра. Все методы, кроме рабочих потоков, вызываются только потоком такта.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ThermalSimulation {
+
+  // доля орбиты в тени Земли
+  private static final double ECLIPSE_FRACTION = 0.35;
+  // постоянная времени нагрева/остывания обшивки, с
+  private static final double OUTSIDE_TAU_SECONDS = 900;
+  // постоянная времени теплообмена обшивки с отсеком, с
+  private static final double EXCHANGE_TAU_SECONDS = 14_400;
+  // постоянная времени термостата отсека, с
+  private static final double HEATER_TAU_SECONDS = 1_800;
+  // амплитуда шума датчиков, градусы
+  private static final double OUTSIDE_NOISE = 0.3;
+  private static final double INSIDE_NOISE = 0.05;
+  // меньше этого числа спутников шаг выполняется одним потоком
+  private static final int PARALLEL_THRESHOLD = 50_000;
+
+  private final SatelliteRegistry satelliteRegistry;
+
+  @Value("${telemetry.simulation.seed:42}")
+  private long seed;
+
+  // сколько секунд модельного времени проходит за такт
+  @Value("${telemetry.simulation.seconds-per-tick:60}")
+  private double secondsPerTick;
+
+  // число рабочих потоков, 0 - по числу ядер
+  @Value("${telemetry.simulation.threads:0}")
+  private int threads;
+
+  // эпоха реестра, по которой построены слоты
+  private long registryEpoch = -1;
+
+  // слоты: id по возрастанию - массив текущего состава реестра, не меняется после публикации
+  private long[] ids = new long[0];
+  // состояние
+  private double[] outside = new double[0];
+  private double[] inside = new double[0];
+  // параметры
+  private float[] periodSeconds = new float[0];
+  private float[] phaseOffset = new float[0];
+  private float[] sunTemperature = new float[0];
+  private float[] shadeTemperature = new float[0];
+  private float[] setpoint = new float[0];
+
+  // коэффициенты шага (зависят только от secondsPerTick)
+  private double outsideAlpha;
+  private double exchangeRate;
+  private double heaterRate;
+
+  // такт, который считают рабочие потоки
+  private long currentTick;
+  private Thread[] workers = new Thread[0];
+  private CyclicBarrier startBarrier;
+  private CyclicBarrier endBarrier;
+
+  @PostConstruct
+  public void start() {
+    outsideAlpha = 1 - Math.exp(-secondsPerTick / OUTSIDE_TAU_SECONDS);
+    exchangeRate = Math.min(1, secondsPerTick / EXCHANGE_TAU_SECONDS);
+    heaterRate = Math.min(1, secondsPerTick / HEATER_TAU_SECONDS);
+
+    int workerCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    if (workerCount > 1) {
+      startBarrier = new CyclicBarrier(workerCount + 1);
+      endBarrier = new CyclicBarrier(workerCount + 1);
+      workers = new Thread[workerCount];
+      for (int w = 0; w < workerCount; w++) {
+        int worker = w;
+        workers[w] = new Thread(() -> runWorker(worker, workerCount), "thermal-sim-" + w);
+        workers[w].setDaemon(true);
+        workers[w].start();
+      }
+    }
+    log.info("Тепловая модель: seed {}, {} с модельного времени за такт, рабочих потоков {}",
+        seed, secondsPerTick, Math.max(1, workers.length));
+  }
+
+  // выполняет шаг модели для такта tick по текущему составу реестра
+  public void step(long tick) {
+    syncSlots(tick);
+    currentTick = tick;
+    if (workers.length == 0 || ids.length < PARALLEL_THRESHOLD) {
+      stepRange(tick, 0, ids.length);
+      return;
+    }
+    try {
+      startBarrier.await();
+      endBarrier.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (BrokenBarrierException e) {
+      throw new IllegalStateException("Рабочие потоки тепловой модели остановлены", e);
+    }
+  }
+
+  public long[] ids() {
+    return ids;
+  }
+
+  public double[] outside() {
+    return outside;
+  }
+
+  public double[] inside() {
+    return inside;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+  }
+
+  private void runWorker(int worker, int workerCount) {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        startBarrier.await();
+        int count = ids.length;
+        int from = (int) ((long) count * worker / workerCount);
+        int to = (int) ((long) count * (worker + 1) / workerCount);
+        stepRange(currentTick, from, to);
+        endBarrier.await();
+      }
+    } catch (InterruptedException | BrokenBarrierException e) {
+      // остановка сервиса
+    }
+  }
+
+  private void stepRange(long tick, int from, int to) {
+    double time = tick * secondsPerTick;
+    for (int i = from; i < to; i++) {
+      double target = targetOutside(i, time);
+      double o = outside[i] + (target - outside[i]) * outsideAlpha;
+      double in = inside[i] + exchangeRate * (o - inside[i])
+          + heaterRate * (setpoint[i] - inside[i]);
+      outside[i] = o + OUTSIDE_NOISE * noise(ids[i], tick, 0);
+      inside[i] = in + INSIDE_NOISE * noise(ids[i], tick, 1);
+    }
+  }
+
+  // температура, к которой стремится обшивка в момент time: освещенная или теневая часть орбиты
+  private double targetOutside(int slot, double time) {
+    double phase = phaseOffset[slot] + time / periodSeconds[slot];
+    phase -= Math.floor(phase);
+    return phase < 1 - ECLIPSE_FRACTION ? sunTemperature[slot] : shadeTemperature[slot];
+  }
+
+  // пересоздает слоты при изменении реестра: состояние оставшихся спутников переносится,
+  // новые начинают с равновесных значений
+  private void syncSlots(long tick) {
+    SatelliteRegistry.ActiveIds activeIds = satelliteRegistry.activeIds();
+    if (activeIds.epoch() == registryEpoch) {
+      return;
+    }
+    registryEpoch = activeIds.epoch();
+    long[] nextIds = activeIds.ids();
+    int n = nextIds.length;
+    double[] nextOutside = new double[n];
+    double[] nextInside = new double[n];
+    float[] nextPeriod = new float[n];
+    float[] nextPhase = new float[n];
+    float[] nextSun = new float[n];
+    float[] nextShade = new float[n];
+    float[] nextSetpoint = new float[n];
+    double time = tick * secondsPerTick;
+    int old = 0;
+    for (int i = 0; i < n; i++) {
+      long id = nextIds[i];
+      while (old < ids.length && ids[old] < id) {
+        old++;
+      }
+      if (old < ids.length && ids[old] == id) {
+        nextOutside[i] = outside[old];
+        nextInside[i] = inside[old];
+        nextPeriod[i] = periodSeconds[old];
+        nextPhase[i] = phaseOffset[old];
+        nextSun[i] = sunTemperature[old];
+        nextShade[i] = shadeTemperature[old];
+        nextSetpoint[i] = setpoint[old];
+        continue;
+      }
+      // период 90-120 мин, освещенная сторона 80..120, теневая -150..-100, уставка 18..25
+      nextPeriod[i] = (float) (5_400 + 1_800 * uniform(id, 0));
+      nextPhase[i] = (float) uniform(id, 1);
+      nextSun[i] = (float) (80 + 40 * uniform(id, 2));
+      nextShade[i] = (float) (-150 + 50 * uniform(id, 3));
+      nextSetpoint[i] = (float) (18 + 7 * uniform(id, 4));
+      double phase = nextPhase[i] + time / nextPeriod[i];
+      phase -= Math.floor(phase);
+      nextOutside[i] = phase < 1 - ECLIPSE_FRACTION ? nextSun[i] : nextShade[i];
+      nextInside[i] = nextSetpoint[i];
+    }
+    ids = nextIds;
+    outside = nextOutside;
+    inside = nextInside;
+    periodSeconds = nextPeriod;
+    phaseOffset = nextPhase;
+    sunTemperature = nextSun;
+    shadeTemperature = nextShade;
+    setpoint = nextSetpoint;
+  }
+
+  // параметр спутника: равномерно в [0, 1)
+  private double uniform(long id, int parameter) {
+    return (hash(seed, id, -1 - parameter) >>> 11) * 0x1.0p-53;
+  }
+
+  // шум такта: равномерно в [-1, 1)
+  private double noise(long id, long tick, int channel) {
+    return ((hash(seed ^ channel * 0xD6E8FEB86659FD93L, id, tick) >>> 11) * 0x1.0p-53) * 2 - 1;
+  }
+
+  // счетчиковый хеш (seed, id, counter) -> 64 бита, без общего состояния между потоками
+  private static long hash(long seed, long id, long counter) {
+    long z = seed + id * 0x9E3779B97F4A7C15L + counter * 0xC2B2AE3D27D4EB4FL;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,45 @@
+-- inbox_events становится секционированной по occurred_at таблицей (секция на сутки, UTC)
+-- event_id хранится как UUID (16 байт вместо 36 символов), индекс по aggregate_id не нужен
+-- секции старше горизонта дедупликации удаляются целиком (см. InboxPartitionMaintenance)
+ALTER TABLE inbox_events RENAME TO inbox_events_legacy;
+ALTER TABLE inbox_events_legacy RENAME CONSTRAINT inbox_events_pkey TO inbox_events_legacy_pkey;
+DROP INDEX idx_inbox_aggregate_id;
+
+-- occurred_at одинаков при повторной доставке события, поэтому (event_id, occurred_at)
+-- уникален для события
+CREATE TABLE inbox_events (
+    event_id UUID NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    event_type TEXT NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL,
+    processed_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (event_id, occurred_at)
+) PARTITION BY RANGE (occurred_at);
+
+-- строки вне созданных секций (например, если обслуживание секций не запускалось)
+CREATE TABLE inbox_events_default PARTITION OF inbox_events DEFAULT;
+
+DO $$
+DECLARE
+    day DATE;
+BEGIN
+    FOR day IN
+        SELECT generate_series((now() AT TIME ZONE 'UTC')::date - 7,
+                               (now() AT TIME ZONE 'UTC')::date + 3,
+                               INTERVAL '1 day')::date
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE inbox_events_p%s PARTITION OF inbox_events FOR VALUES FROM (%L) TO (%L)',
+            to_char(day, 'YYYYMMDD'), day || ' 00:00:00+00', (day + 1) || ' 00:00:00+00');
+    END LOOP;
+END $$;
+
+-- старые строки не знают occurred_at - берется processed_at, переносится только горизонт
+INSERT INTO inbox_events (event_id, aggregate_id, event_type, occurred_at, processed_at)
+SELECT CAST(event_id AS UUID), aggregate_id, event_type, processed_at, processed_at
+FROM inbox_events_legacy
+WHERE processed_at >= now() - INTERVAL '7 days'
+  AND event_id ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$';
+
+DROP TABLE inbox_events_legacy;
@@ -0,0 +1,20 @@
+-- позиция события в топике kafka: после рестарта реестр спутников догоняется от снимка
+-- событиями из inbox_events, которые были применены после него
+ALTER TABLE inbox_events ADD COLUMN source_partition INT, ADD COLUMN source_offset BIGINT;
+
+CREATE INDEX idx_inbox_source_position ON inbox_events (source_partition, source_offset);
+
+-- последний снимок SatelliteRegistry (одна строка)
+CREATE TABLE registry_snapshot (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    -- id спутников по возрастанию, по 8 байт (big-endian)
+    satellite_ids BYTEA NOT NULL,
+    satellite_count INT NOT NULL,
+    taken_at TIMESTAMPTZ NOT NULL
+);
+
+-- последний примененный в снимке offset по партициям топика событий
+CREATE TABLE registry_snapshot_offsets (
+    source_partition INT PRIMARY KEY,
+    last_offset BIGINT NOT NULL
+);
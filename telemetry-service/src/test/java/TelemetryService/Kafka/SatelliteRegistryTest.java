@@ -0,0 +1,99 @@
+package TelemetryService.Kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class SatelliteRegistryTest {
+
+  private SatelliteRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SatelliteRegistry();
+    registry.restore(new long[]{30, 10, 20}, Map.of());
+  }
+
+  @Test
+  void shouldKeepLastEventOfSameIdInBatch() {
+    // Given
+    long epoch = registry.activeIds().epoch();
+    SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+    changes.add(15);
+    changes.remove(15);
+    changes.remove(20);
+    changes.add(20);
+
+    // When
+    registry.applyBatch(changes, Map.of());
+
+    // Then
+    assertThat(registry.activeIds().ids()).containsExactly(10, 20, 30);
+    assertThat(registry.activeIds().epoch()).isEqualTo(epoch);
+  }
+
+  @Test
+  void shouldMergeIdsOutsideCurrentRange() {
+    // Given
+    SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+    changes.add(1);
+    changes.add(40);
+    changes.remove(10);
+    changes.remove(30);
+    changes.remove(5);
+    changes.remove(50);
+
+    // When
+    registry.applyBatch(changes, Map.of());
+
+    // Then
+    assertThat(registry.activeIds().ids()).containsExactly(1, 20, 40);
+    assertThat(registry.contains(1)).isTrue();
+    assertThat(registry.contains(30)).isFalse();
+  }
+
+  @Test
+  void shouldKeepEpochOnOffsetsOnlyBatch() {
+    // Given
+    SatelliteRegistry.ActiveIds before = registry.activeIds();
+    long version = registry.snapshot().version();
+
+    // When
+    registry.markApplied(Map.of(0, 100L));
+    registry.markApplied(Map.of(0, 90L, 1, 7L));
+
+    // Then
+    assertThat(registry.activeIds()).isSameAs(before);
+    assertThat(registry.snapshot().version()).isEqualTo(version + 2);
+    assertThat(registry.snapshot().offsets()).containsExactlyInAnyOrderEntriesOf(
+        Map.of(0, 100L, 1, 7L));
+  }
+
+  @Test
+  void shouldApplyBatchOnlyAfterCommit() {
+    // Given
+    SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+    changes.add(40);
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      // When
+      registry.applyBatchAfterCommit(changes, Map.of(0, 5L));
+
+      // Then
+      assertThat(registry.contains(40)).isFalse();
+      assertThat(registry.snapshot().offsets()).isEmpty();
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+      assertThat(registry.contains(40)).isTrue();
+      assertThat(registry.snapshot().offsets()).containsExactlyInAnyOrderEntriesOf(
+          Map.of(0, 5L));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package TelemetryService.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JournalSegmentTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void shouldRecoverUpToCorruptedRecord() throws IOException {
+    // Given
+    Path path = dir.resolve("segment.seg");
+    JournalSegment segment = JournalSegment.create(path, 0, 1024, 2);
+    segment.append(1000, bytes("first"));
+    segment.append(2000, bytes("second"));
+    int intactEnd = segment.end();
+    segment.append(3000, bytes("third"));
+    segment.force();
+    // испорчено тело последней записи - crc не совпадает
+    write(path, intactEnd + JournalSegment.HEADER_BYTES, bytes("X"));
+
+    // When
+    JournalSegment recovered = JournalSegment.open(path, 0, 2);
+
+    // Then
+    assertThat(recovered.end()).isEqualTo(intactEnd);
+    assertThat(recovered.lastTimeMs()).isEqualTo(2000);
+    assertThat(bodies(recovered)).containsExactly("first", "second");
+
+    // запись продолжается с места обрыва, хвост старой записи не виден после повторного открытия
+    assertThat(recovered.append(4000, bytes("fourth"))).isTrue();
+    recovered.force();
+    JournalSegment reopened = JournalSegment.open(path, 0, 2);
+    assertThat(bodies(reopened)).containsExactly("first", "second", "fourth");
+    assertThat(reopened.positionAtOrAfter(2500)).isEqualTo(intactEnd);
+  }
+
+  @Test
+  void shouldRecoverFromTruncatedFile() throws IOException {
+    // Given
+    Path path = dir.resolve("segment.seg");
+    JournalSegment segment = JournalSegment.create(path, 0, 1024, 2);
+    segment.append(1000, bytes("first"));
+    int intactEnd = segment.end();
+    segment.append(2000, bytes("second"));
+    segment.force();
+    // файл обрезан посреди второй записи
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(intactEnd + JournalSegment.HEADER_BYTES + 2);
+    }
+
+    // When
+    JournalSegment recovered = JournalSegment.open(path, 0, 2);
+
+    // Then
+    assertThat(recovered.end()).isEqualTo(intactEnd);
+    assertThat(recovered.lastTimeMs()).isEqualTo(1000);
+    assertThat(bodies(recovered)).containsExactly("first");
+    assertThat(recovered.append(3000, bytes("third"))).isFalse();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void write(Path path, int position, byte[] data) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(data), position);
+    }
+  }
+
+  private static List<String> bodies(JournalSegment segment) {
+    List<String> bodies = new ArrayList<>();
+    for (int position = 0; position < segment.end(); position = segment.next(position)) {
+      bodies.add(StandardCharsets.UTF_8.decode(segment.body(position)).toString());
+    }
+    return bodies;
+  }
+}
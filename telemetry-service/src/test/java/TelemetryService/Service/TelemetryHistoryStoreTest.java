@@ -0,0 +1,105 @@
+package TelemetryService.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import constellationsim.telemetry.proto.SatelliteHistory;
+import constellationsim.telemetry.proto.TelemetryHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TelemetryHistoryStoreTest {
+
+  private static final long SATELLITE_ID = 7;
+  // один и тот же массив id во всех кадрах - строки спутника не переназначаются
+  private static final long[] IDS = {SATELLITE_ID};
+
+  @Test
+  void shouldKeepOnlyLastCapacityTicksAfterWrap() {
+    // Given
+    TelemetryHistoryStore store = store(4, 100);
+    for (long tick = 1; tick <= 6; tick++) {
+      store.record(frame(tick, tick, -tick), tick * 1000);
+    }
+
+    // When
+    TelemetryHistory history = store.query(IDS, 0, 10_000, 0);
+
+    // Then
+    SatelliteHistory series = history.getSatellites(0);
+    assertThat(series.getBucketStartMsList()).containsExactly(3000L, 4000L, 5000L, 6000L);
+    assertThat(series.getOutsideAvgList()).containsExactly(3.0, 4.0, 5.0, 6.0);
+    assertThat(series.getInsideAvgList()).containsExactly(-3.0, -4.0, -5.0, -6.0);
+  }
+
+  @Test
+  void shouldWidenBucketToMaxPoints() {
+    // Given
+    TelemetryHistoryStore store = store(100, 10);
+    for (long tick = 1; tick <= 50; tick++) {
+      store.record(frame(tick, 20.0, 10.0), tick * 1000);
+    }
+
+    // When
+    TelemetryHistory history = store.query(IDS, 0, 100_000, 0);
+
+    // Then
+    // 50 тактов за 49 с: интервал (49000 / 10 + 1) мс дает не больше 10 точек
+    assertThat(history.getBucketMs()).isEqualTo(4901);
+    assertThat(history.getSatellites(0).getBucketStartMsCount()).isLessThanOrEqualTo(10);
+  }
+
+  @Test
+  void shouldAggregateMinMaxAvgPerBucket() {
+    // Given
+    TelemetryHistoryStore store = store(10, 100);
+    store.record(frame(1, 1.0, 20.0), 1000);
+    store.record(frame(2, 3.0, 22.0), 1500);
+    store.record(frame(3, 5.0, 21.0), 2000);
+    store.record(frame(4, 9.0, 25.0), 2500);
+
+    // When
+    TelemetryHistory history = store.query(IDS, 1000, 2500, 1000);
+
+    // Then
+    SatelliteHistory series = history.getSatellites(0);
+    assertThat(history.getBucketMs()).isEqualTo(1000);
+    assertThat(series.getBucketStartMsList()).containsExactly(1000L, 2000L);
+    assertThat(series.getOutsideMinList()).containsExactly(1.0, 5.0);
+    assertThat(series.getOutsideMaxList()).containsExactly(3.0, 9.0);
+    assertThat(series.getOutsideAvgList()).containsExactly(2.0, 7.0);
+    assertThat(series.getInsideMinList()).containsExactly(20.0, 21.0);
+    assertThat(series.getInsideMaxList()).containsExactly(22.0, 25.0);
+    assertThat(series.getInsideAvgList()).containsExactly(21.0, 23.0);
+  }
+
+  @Test
+  void shouldKeepTickTimesMonotonicWhenClockGoesBack() {
+    // Given
+    TelemetryHistoryStore store = store(10, 100);
+    store.record(frame(1, 1.0, 1.0), 5000);
+    // часы сдвинулись назад
+    store.record(frame(2, 2.0, 2.0), 4000);
+    store.record(frame(3, 3.0, 3.0), 6000);
+
+    // When
+    TelemetryHistory history = store.query(IDS, 5000, 6000, 0);
+
+    // Then
+    SatelliteHistory series = history.getSatellites(0);
+    assertThat(series.getBucketStartMsList()).containsExactly(5000L, 5000L, 6000L);
+    assertThat(series.getOutsideAvgList()).containsExactly(1.0, 2.0, 3.0);
+  }
+
+  private static TelemetryHistoryStore store(int capacity, int maxPoints) {
+    TelemetryHistoryStore store = new TelemetryHistoryStore(new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(store, "capacity", capacity);
+    ReflectionTestUtils.setField(store, "maxPoints", maxPoints);
+    store.init();
+    return store;
+  }
+
+  private static TelemetryFrame frame(long tick, double outside, double inside) {
+    return new TelemetryFrame(tick, IDS, new double[]{outside}, new double[]{inside}, 1);
+  }
+}
@@ -0,0 +1,141 @@
+package TelemetryService.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import constellationsim.telemetry.proto.TelemetryBatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class TelemetryJournalTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void shouldContinueAfterReopen() throws IOException {
+    // Given
+    TelemetryJournal journal = journal(1 << 20, Long.MAX_VALUE, 1 << 20);
+    for (long tick = 1; tick <= 5; tick++) {
+      journal.append(frame(tick), tick * 1000);
+    }
+    journal.close();
+
+    // When
+    TelemetryJournal reopened = journal(1 << 20, Long.MAX_VALUE, 1 << 20);
+    reopened.append(frame(6), 6000);
+
+    // Then
+    assertThat(reopened.lastTick()).isEqualTo(5);
+    assertThat(ticks(reopened.cursor(0))).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+    assertThat(ticks(reopened.cursor(3500))).containsExactly(4L, 5L, 6L);
+  }
+
+  @Test
+  void shouldDropCorruptedTailOnReopen() throws IOException {
+    // Given
+    TelemetryJournal journal = journal(1 << 20, Long.MAX_VALUE, 1 << 20);
+    for (long tick = 1; tick <= 3; tick++) {
+      journal.append(frame(tick), tick * 1000);
+    }
+    long end = journal.sizeBytes();
+    journal.close();
+    // последний байт тела последней записи
+    try (FileChannel channel = FileChannel.open(segmentFiles().get(0),
+        StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), end - 1);
+    }
+
+    // When
+    TelemetryJournal reopened = journal(1 << 20, Long.MAX_VALUE, 1 << 20);
+
+    // Then
+    assertThat(reopened.lastTick()).isEqualTo(2);
+    assertThat(reopened.sizeBytes()).isEqualTo(end * 2 / 3);
+    assertThat(ticks(reopened.cursor(0))).containsExactly(1L, 2L);
+  }
+
+  @Test
+  void shouldDropOldestSegmentsOverSizeLimit() throws IOException {
+    // Given: одна запись на сегмент, предел - три записи
+    int recordBytes = recordBytes();
+    TelemetryJournal journal = journal(3L * recordBytes, Long.MAX_VALUE, recordBytes);
+
+    // When
+    for (long tick = 1; tick <= 6; tick++) {
+      journal.append(frame(tick), tick * 1000);
+    }
+
+    // Then
+    assertThat(segmentFiles()).hasSize(3);
+    assertThat(journal.sizeBytes()).isEqualTo(3L * recordBytes);
+    assertThat(ticks(journal.cursor(0))).containsExactly(4L, 5L, 6L);
+  }
+
+  @Test
+  void shouldDropSegmentsOlderThanMaxAge() throws IOException {
+    // Given
+    int recordBytes = recordBytes();
+    TelemetryJournal journal = journal(1 << 20, 2500, recordBytes);
+
+    // When
+    for (long tick = 1; tick <= 5; tick++) {
+      journal.append(frame(tick), tick * 1000);
+    }
+
+    // Then: на момент 5000 удалены сегменты, последняя запись которых старше 2500
+    assertThat(segmentFiles()).hasSize(3);
+    assertThat(ticks(journal.cursor(0))).containsExactly(3L, 4L, 5L);
+  }
+
+  private TelemetryJournal journal(long maxBytes, long maxAgeMs, int segmentBytes)
+      throws IOException {
+    TelemetryJournal journal = new TelemetryJournal(new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(journal, "enabled", true);
+    ReflectionTestUtils.setField(journal, "dir", dir);
+    ReflectionTestUtils.setField(journal, "segmentBytes", segmentBytes);
+    ReflectionTestUtils.setField(journal, "maxBytes", maxBytes);
+    ReflectionTestUtils.setField(journal, "maxAgeMs", maxAgeMs);
+    ReflectionTestUtils.setField(journal, "indexInterval", 2);
+    journal.open();
+    return journal;
+  }
+
+  private static TelemetryFrame frame(long tick) {
+    return new TelemetryFrame(tick, new long[]{1, 2, 3}, new double[]{10.5, 20.5, 30.5},
+        new double[]{20.0, 21.0, 22.0}, 100);
+  }
+
+  // размер записи кадра в журнале; у кадров с тактами 1-9 он одинаковый
+  private static int recordBytes() {
+    return JournalSegment.HEADER_BYTES + frame(1).batches()[0].length;
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> list = Files.list(dir)) {
+      return list.filter(path -> path.getFileName().toString().endsWith(".seg"))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static List<Long> ticks(TelemetryJournal.JournalCursor cursor)
+      throws InvalidProtocolBufferException {
+    List<Long> ticks = new ArrayList<>();
+    for (ByteBuffer body = cursor.next(); body != null; body = cursor.next()) {
+      ticks.add(TelemetryBatch.parseFrom(body).getTick());
+    }
+    return ticks;
+  }
+}
@@ -0,0 +1,66 @@
+package TelemetryService.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import TelemetryService.Kafka.SatelliteRegistry;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ThermalSimulationTest {
+
+  // больше порога параллельного шага модели (PARALLEL_THRESHOLD)
+  private static final int FLEET_SIZE = 60_000;
+
+  private ThermalSimulation single;
+  private ThermalSimulation parallel;
+
+  @AfterEach
+  void tearDown() {
+    single.shutdown();
+    parallel.shutdown();
+  }
+
+  @Test
+  void shouldProduceSameValuesForAnyThreadCount() {
+    // Given
+    SatelliteRegistry registry = new SatelliteRegistry();
+    registry.restore(LongStream.rangeClosed(1, FLEET_SIZE).map(id -> id * 7).toArray(), Map.of());
+    single = simulation(registry, 1);
+    parallel = simulation(registry, 4);
+
+    for (long tick = 1; tick <= 20; tick++) {
+      if (tick == 10) {
+        // смена состава: состояние оставшихся переносится, новые начинают с равновесия
+        SatelliteRegistry.Changes changes = new SatelliteRegistry.Changes();
+        changes.remove(7);
+        changes.remove(7L * FLEET_SIZE);
+        changes.add(3);
+        changes.add(7L * FLEET_SIZE + 1);
+        registry.applyBatch(changes, Map.of());
+      }
+
+      // When
+      single.step(tick);
+      parallel.step(tick);
+
+      // Then
+      assertThat(parallel.ids()).isEqualTo(single.ids());
+      assertThat(parallel.outside()).as("outside, tick %d", tick)
+          .containsExactly(single.outside());
+      assertThat(parallel.inside()).as("inside, tick %d", tick)
+          .containsExactly(single.inside());
+    }
+  }
+
+  private static ThermalSimulation simulation(SatelliteRegistry registry, int threads) {
+    ThermalSimulation simulation = new ThermalSimulation(registry);
+    ReflectionTestUtils.setField(simulation, "seed", 42L);
+    ReflectionTestUtils.setField(simulation, "secondsPerTick", 60.0);
+    ReflectionTestUtils.setField(simulation, "threads", threads);
+    simulation.start();
+    return simulation;
+  }
+}